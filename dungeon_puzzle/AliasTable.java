@@ -0,0 +1,105 @@
+package games.dungeon_puzzle;
+
+import java.util.SplittableRandom;
+
+/**
+ * Walker's alias method: draws index i with probability weight[i] / sum
+ * in constant time, whatever the number of weights. Built in O(n) with
+ * Vose's two-worklist construction. Each column holds its own index with
+ * some probability and one alias for the rest, so a sample is a single
+ * random double: its integer part picks the column and its fraction
+ * decides between the column and its alias. Immutable once built.
+ *
+ * One table can also hold several independent groups of weights, laid
+ * end to end in the same two arrays, so drawing from any of them is no
+ * more pointer chasing than drawing from one.
+ */
+final class AliasTable {
+    private final double[] probability;
+    // Relative to the start of the column's group
+    private final int[] alias;
+    // Group g is columns groupStart[g] up to groupStart[g + 1]
+    private final int[] groupStart;
+
+    AliasTable(double[] weights) {
+        this(weights, new int[] {0, weights.length});
+    }
+
+    AliasTable(double[] weights, int[] groupStart) {
+        probability = new double[weights.length];
+        alias = new int[weights.length];
+        this.groupStart = groupStart.clone();
+        int[] small = new int[weights.length];
+        int[] large = new int[weights.length];
+        for (int g = 0; g + 1 < groupStart.length; g++) {
+            build(weights, groupStart[g], groupStart[g + 1], small, large);
+        }
+    }
+
+    private void build(double[] weights, int start, int end, int[] small, int[] large) {
+        int count = end - start;
+        if (count <= 0) {
+            throw new IllegalArgumentException("No weights");
+        }
+        double sum = 0;
+        for (int i = start; i < end; i++) {
+            if (!(weights[i] > 0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException("Weights must be positive: " + weights[i]);
+            }
+            sum += weights[i];
+        }
+        // probability holds the scaled weights until each column is settled
+        int smallCount = 0;
+        int largeCount = 0;
+        for (int i = 0; i < count; i++) {
+            probability[start + i] = weights[start + i] * count / sum;
+            if (probability[start + i] < 1) {
+                small[smallCount++] = i;
+            } else {
+                large[largeCount++] = i;
+            }
+        }
+        while (smallCount > 0 && largeCount > 0) {
+            int less = small[--smallCount];
+            int more = large[--largeCount];
+            alias[start + less] = more;
+            probability[start + more] += probability[start + less] - 1;
+            if (probability[start + more] < 1) {
+                small[smallCount++] = more;
+            } else {
+                large[largeCount++] = more;
+            }
+        }
+        // Whatever is left is 1 up to rounding error
+        while (largeCount > 0) {
+            int i = large[--largeCount];
+            probability[start + i] = 1;
+            alias[start + i] = i;
+        }
+        while (smallCount > 0) {
+            int i = small[--smallCount];
+            probability[start + i] = 1;
+            alias[start + i] = i;
+        }
+    }
+
+    // A table of one draws nothing from random
+    int sample(SplittableRandom random) {
+        return sample(0, random);
+    }
+
+    // An index within group g, counted from the group's start
+    int sample(int group, SplittableRandom random) {
+        int start = groupStart[group];
+        int count = groupStart[group + 1] - start;
+        if (count == 1) {
+            return 0;
+        }
+        double u = random.nextDouble() * count;
+        int column = (int) u;
+        // Picked without a branch, since which way it goes can't be predicted
+        int other = alias[start + column];
+        int keep = u - column < probability[start + column] ? 1 : 0;
+        return other + (column - other) * keep;
+    }
+}
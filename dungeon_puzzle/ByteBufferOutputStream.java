@@ -0,0 +1,49 @@
+package games.dungeon_puzzle;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * OutputStream that writes straight into a direct ByteBuffer, so a
+ * channel can send the rendered bytes without another copy. The buffer
+ * stays in fill mode; callers flip, write and compact around it. It
+ * doubles when a turn renders more than fits. As an OutputSink it takes
+ * a game's turns directly.
+ */
+class ByteBufferOutputStream extends OutputStream implements OutputSink {
+    private ByteBuffer buffer;
+
+    ByteBufferOutputStream(int initialCapacity) {
+        this.buffer = ByteBuffer.allocateDirect(initialCapacity);
+    }
+
+    @Override
+    public void write(int b) {
+        ensureRemaining(1);
+        buffer.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+        ensureRemaining(length);
+        buffer.put(bytes, offset, length);
+    }
+
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    private void ensureRemaining(int length) {
+        if (buffer.remaining() >= length) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < length) {
+            capacity *= 2;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        buffer = grown;
+    }
+}
@@ -0,0 +1,129 @@
+package games.dungeon_puzzle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Binary snapshots of a running game, for parking a session across a
+ * restart or handing it to another process. Written with DataOutput, no
+ * Java serialization; the classic dungeon fits in well under a kilobyte.
+ *
+ * Layout: magic (int), version (short), world size (int), then the
+ * session (see Game.writeState), then the changed rooms as a count
+ * followed by (room id, items) each, in id order. Items are catalog
+ * names; version 2 and older wrote (name, description, value) and those
+ * are interned on the way in. Version 4 added the pickup order of held
+ * items that tie on value, which decides the most valuable one. Only
+ * rooms the world reports as changed are written, so a generated dungeon
+ * costs space for the rooms players disturbed, not for the rooms they
+ * walked through.
+ *
+ * A snapshot is restored into a freshly constructed Game over an
+ * equivalent world: the same seed and size for a generated dungeon, any
+ * classic dungeon for the classic game.
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x44504350; // "DPCP"
+    static final int VERSION = 4;
+    private static final int MAX_ITEMS = 0xFFFF;
+
+    private Checkpoint() {
+    }
+
+    public static byte[] save(Game game) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(1024);
+            DataOutputStream out = new DataOutputStream(bytes);
+            RoomStore world = game.getWorld();
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeInt(world.size());
+            game.writeState(out);
+
+            int[] changed = world.getChangedRoomIds();
+            // Worlds list rooms in the order they were loaded; id order makes equal games save equal bytes
+            Arrays.sort(changed);
+            out.writeInt(changed.length);
+            for (int id : changed) {
+                Room room = world.getRoom(id);
+                out.writeInt(id);
+                writeItems(out, room.getItems());
+            }
+            out.flush();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write checkpoint", e);
+        }
+    }
+
+    /**
+     * Loads a snapshot into a game that hasn't been played yet. Throws
+     * IOException if the data is truncated, corrupt, from a newer version
+     * or from a different world.
+     */
+    public static void restore(Game game, byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        int version = in.readUnsignedShort();
+        if (version > VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        RoomStore world = game.getWorld();
+        int worldSize = in.readInt();
+        if (worldSize != world.size()) {
+            throw new IOException("Checkpoint is from a world of " + worldSize + " rooms, not " + world.size());
+        }
+        game.readState(in, version);
+
+        int roomCount = in.readInt();
+        for (int i = 0; i < roomCount; i++) {
+            Room room = world.getRoom(in.readInt());
+            if (room == null) {
+                throw new IOException("Checkpoint names a room outside the world");
+            }
+            for (Item item : room.getItems().toArray(new Item[0])) {
+                room.removeItem(item.getName());
+            }
+            int itemCount = in.readUnsignedShort();
+            for (int j = 0; j < itemCount; j++) {
+                room.addItem(readItem(in, version));
+            }
+        }
+    }
+
+    static void writeItems(DataOutput out, Collection<Item> items) throws IOException {
+        if (items.size() > MAX_ITEMS) {
+            throw new IOException("Too many items to checkpoint: " + items.size());
+        }
+        out.writeShort(items.size());
+        for (Item item : items) {
+            writeItem(out, item);
+        }
+    }
+
+    static void writeItem(DataOutput out, Item item) throws IOException {
+        out.writeUTF(item.getName());
+    }
+
+    static Item readItem(DataInput in, int version) throws IOException {
+        if (version < 3) {
+            return ItemCatalog.intern(in.readUTF(), in.readUTF(), in.readInt());
+        }
+        String name = in.readUTF();
+        Item item = ItemCatalog.find(name);
+        if (item == null) {
+            throw new IOException("Checkpoint names an unknown item: " + name);
+        }
+        return item;
+    }
+}
@@ -0,0 +1,83 @@
+package games.dungeon_puzzle;
+
+/**
+ * Totals over many simulated fights between one player state and one
+ * enemy. Estimates are built per fork-join leaf and combined with merge(),
+ * like SimulationReport.
+ */
+public class CombatEstimate {
+    private long fights;
+    private long wins;
+    private long deaths;
+    private long escapes;
+    private long totalRounds;
+    private long totalHealthLost;
+    private long totalPotionsUsed;
+    private long fightsWithPotion;
+
+    void addWin(int rounds, int healthLost, int potionsUsed) {
+        wins++;
+        add(rounds, healthLost, potionsUsed);
+    }
+
+    // A death always costs the whole health bar, so it stays out of the
+    // health-lost average; that covers only the fights the player survives
+    void addDeath(int rounds, int potionsUsed) {
+        deaths++;
+        add(rounds, 0, potionsUsed);
+    }
+
+    void addEscape(int rounds, int healthLost, int potionsUsed) {
+        escapes++;
+        add(rounds, healthLost, potionsUsed);
+    }
+
+    private void add(int rounds, int healthLost, int potionsUsed) {
+        fights++;
+        totalRounds += rounds;
+        totalHealthLost += healthLost;
+        totalPotionsUsed += potionsUsed;
+        if (potionsUsed > 0) {
+            fightsWithPotion++;
+        }
+    }
+
+    public CombatEstimate merge(CombatEstimate other) {
+        fights += other.fights;
+        wins += other.wins;
+        deaths += other.deaths;
+        escapes += other.escapes;
+        totalRounds += other.totalRounds;
+        totalHealthLost += other.totalHealthLost;
+        totalPotionsUsed += other.totalPotionsUsed;
+        fightsWithPotion += other.fightsWithPotion;
+        return this;
+    }
+
+    public long getFights() { return fights; }
+    public double getWinProbability() { return ratio(wins); }
+    public double getDeathProbability() { return ratio(deaths); }
+    public double getEscapeProbability() { return ratio(escapes); }
+    public double getExpectedRounds() { return ratio(totalRounds); }
+    // Per fight survived, net of potions, so it can be negative when the
+    // player drinks early
+    public double getExpectedHealthLost() {
+        long survived = wins + escapes;
+        return survived == 0 ? 0 : (double) totalHealthLost / survived;
+    }
+    public double getExpectedPotionsUsed() { return ratio(totalPotionsUsed); }
+    // Share of fights in which at least one potion was drunk
+    public double getPotionProbability() { return ratio(fightsWithPotion); }
+
+    private double ratio(long total) {
+        return fights == 0 ? 0 : (double) total / fights;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Fights: %d  Win: %.1f%%  Death: %.1f%%  Escape: %.1f%%  "
+                + "Rounds: %.2f  Health Lost: %.1f  Potions: %.2f",
+            fights, 100 * getWinProbability(), 100 * getDeathProbability(), 100 * getEscapeProbability(),
+            getExpectedRounds(), getExpectedHealthLost(), getExpectedPotionsUsed());
+    }
+}
@@ -0,0 +1,190 @@
+package games.dungeon_puzzle;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Monte Carlo estimate of how a fight would go: plays many fights between
+ * a player's current health, attack and potions and one enemy, under
+ * CombatRules and a fixed set of Tactics, and totals the outcomes.
+ *
+ * Fights are played in chunks, each with its own SplittableRandom derived
+ * from the seed and the chunk number, so a given seed gives the same
+ * estimate on any number of cores. estimate() spreads the chunks over a
+ * fork-join pool for tuning runs; estimateHere() plays them on the
+ * calling thread, for in-game readouts that mustn't compete with other
+ * sessions for the pool.
+ */
+public class CombatEstimator {
+    private static final int CHUNK_SIZE = 4096;
+    private static final int CHUNKS_PER_TASK = 4;
+
+    /**
+     * How the simulated player fights: drink a potion at or below one
+     * health threshold, try to run at or below another once out of
+     * potions, attack otherwise. A flee threshold of 0 never runs.
+     */
+    public static final class Tactics {
+        public static final Tactics STANDARD = new Tactics(30, 0);
+
+        private final int potionBelow;
+        private final int fleeBelow;
+
+        public Tactics(int potionBelow, int fleeBelow) {
+            this.potionBelow = potionBelow;
+            this.fleeBelow = fleeBelow;
+        }
+
+        public int getPotionBelow() { return potionBelow; }
+        public int getFleeBelow() { return fleeBelow; }
+    }
+
+    private final ForkJoinPool pool;
+    private final Tactics tactics;
+
+    public CombatEstimator() {
+        this(ForkJoinPool.commonPool(), Tactics.STANDARD);
+    }
+
+    public CombatEstimator(ForkJoinPool pool, Tactics tactics) {
+        this.pool = pool;
+        this.tactics = tactics;
+    }
+
+    // Plays the fights across the pool
+    public CombatEstimate estimate(Player player, int potions, Enemy enemy, int fights, long seed) {
+        return pool.invoke(new FightBatch(new Matchup(player, potions, enemy, fights, seed), 0, chunks(fights)));
+    }
+
+    // Plays the fights on the calling thread; same result as estimate() for the same seed
+    public CombatEstimate estimateHere(Player player, int potions, Enemy enemy, int fights, long seed) {
+        Matchup matchup = new Matchup(player, potions, enemy, fights, seed);
+        CombatEstimate estimate = new CombatEstimate();
+        for (int chunk = 0; chunk < chunks(fights); chunk++) {
+            playChunk(matchup, chunk, estimate);
+        }
+        return estimate;
+    }
+
+    private static int chunks(int fights) {
+        return (fights + CHUNK_SIZE - 1) / CHUNK_SIZE;
+    }
+
+    // A snapshot of both sides, so the fights never touch live game objects
+    private static final class Matchup {
+        final int health;
+        final int maxHealth;
+        final int attackPower;
+        final int potions;
+        final int enemyHealth;
+        final int enemyAttackPower;
+        final int fights;
+        final long seed;
+
+        Matchup(Player player, int potions, Enemy enemy, int fights, long seed) {
+            this.health = player.getHealth();
+            this.maxHealth = player.getMaxHealth();
+            this.attackPower = player.getAttackPower();
+            this.potions = potions;
+            this.enemyHealth = enemy.getHealth();
+            this.enemyAttackPower = enemy.getAttackPower();
+            this.fights = fights;
+            this.seed = seed;
+        }
+    }
+
+    private void playChunk(Matchup matchup, int chunk, CombatEstimate estimate) {
+        SplittableRandom random = new SplittableRandom(DungeonGenerator.mix(matchup.seed, chunk));
+        int count = Math.min(CHUNK_SIZE, matchup.fights - chunk * CHUNK_SIZE);
+        for (int i = 0; i < count; i++) {
+            fight(matchup, random, estimate);
+        }
+    }
+
+    // One fight, round by round as Game plays them
+    private void fight(Matchup matchup, SplittableRandom random, CombatEstimate estimate) {
+        int health = matchup.health;
+        int enemyHealth = matchup.enemyHealth;
+        int potions = matchup.potions;
+        int rounds = 0;
+        while (true) {
+            rounds++;
+            if (potions > 0 && health <= tactics.potionBelow) {
+                health = CombatRules.healed(health, matchup.maxHealth);
+                potions--;
+                continue;
+            }
+            if (potions == 0 && health <= tactics.fleeBelow) {
+                if (CombatRules.escapes(random)) {
+                    estimate.addEscape(rounds, matchup.health - health, matchup.potions - potions);
+                    return;
+                }
+            } else {
+                enemyHealth -= CombatRules.playerDamage(matchup.attackPower, random);
+                if (enemyHealth <= 0) {
+                    estimate.addWin(rounds, matchup.health - health, matchup.potions - potions);
+                    return;
+                }
+            }
+            health -= CombatRules.enemyDamage(matchup.enemyAttackPower, random);
+            if (health <= 0) {
+                estimate.addDeath(rounds, matchup.potions - potions);
+                return;
+            }
+        }
+    }
+
+    private class FightBatch extends RecursiveTask<CombatEstimate> {
+        private static final long serialVersionUID = 1L;
+        // Tasks are serializable only through ForkJoinTask and are never serialized
+        private final transient Matchup matchup;
+        private final int from;
+        private final int to;
+
+        FightBatch(Matchup matchup, int from, int to) {
+            this.matchup = matchup;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected CombatEstimate compute() {
+            if (to - from <= CHUNKS_PER_TASK) {
+                CombatEstimate estimate = new CombatEstimate();
+                for (int chunk = from; chunk < to; chunk++) {
+                    playChunk(matchup, chunk, estimate);
+                }
+                return estimate;
+            }
+            int mid = (from + to) >>> 1;
+            FightBatch left = new FightBatch(matchup, from, mid);
+            left.fork();
+            CombatEstimate right = new FightBatch(matchup, mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Tuning table: every enemy type against a player at full, half and low health,
+    // with and without a potion
+    public static void main(String[] args) {
+        int fights = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        CombatEstimator estimator = new CombatEstimator();
+        Player player = new Player();
+        EnemySpawner spawner = new EnemySpawner();
+        SplittableRandom random = new SplittableRandom(42);
+        for (EnemyType type : spawner.getEnemyTypes()) {
+            Enemy enemy = spawner.spawn(type, random);
+            for (int health : new int[] {player.getMaxHealth(), player.getMaxHealth() / 2, 20}) {
+                player.setHealth(health);
+                for (int potions = 0; potions <= 1; potions++) {
+                    long start = System.nanoTime();
+                    CombatEstimate estimate = estimator.estimate(player, potions, enemy, fights, 42);
+                    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                    System.out.println(enemy.getName() + " vs " + health + " health, " + potions
+                        + (potions == 1 ? " potion: " : " potions: ") + estimate + "  [" + elapsedMillis + " ms]");
+                }
+            }
+        }
+    }
+}
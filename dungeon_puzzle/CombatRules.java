@@ -0,0 +1,35 @@
+package games.dungeon_puzzle;
+
+import java.util.SplittableRandom;
+
+/**
+ * The numbers behind a fight, shared by Game and CombatEstimator so that
+ * estimates follow the rules players actually fight under. Each roll
+ * draws from the random source exactly as the game always has, so seeded
+ * sessions and replays are unaffected.
+ */
+final class CombatRules {
+    static final int PLAYER_DAMAGE_SPREAD = 10;
+    static final int ENEMY_DAMAGE_SPREAD = 5;
+    static final int POTION_HEALING = 30;
+    static final double ESCAPE_CHANCE = 0.5;
+
+    private CombatRules() {
+    }
+
+    static int playerDamage(int attackPower, SplittableRandom random) {
+        return attackPower + random.nextInt(PLAYER_DAMAGE_SPREAD);
+    }
+
+    static int enemyDamage(int attackPower, SplittableRandom random) {
+        return attackPower + random.nextInt(ENEMY_DAMAGE_SPREAD);
+    }
+
+    static int healed(int health, int maxHealth) {
+        return Math.min(health + POTION_HEALING, maxHealth);
+    }
+
+    static boolean escapes(SplittableRandom random) {
+        return random.nextDouble() < ESCAPE_CHANCE;
+    }
+}
@@ -0,0 +1,174 @@
+package games.dungeon_puzzle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Every input line of a session with the time it arrived, plus the time
+ * warning and time limit if they fired, enough to replay the session
+ * exactly from its seed. Replays feed the recorded times to the game
+ * instead of waiting for them, so a five minute session reruns in
+ * milliseconds.
+ *
+ * Layout: magic (int), version (short), seed (long), then one entry per
+ * line or timer firing: milliseconds since the previous entry as a zigzag
+ * varint, shifted left two bits to hold the entry's kind, then for a line
+ * its length in UTF-8 bytes as a varint and the bytes. Versions 1 and 2
+ * held lines in modified UTF-8, which can't encode one over 65,535 bytes,
+ * and version 1 logs hold only lines and have no kind bits. A typical
+ * entry is under ten bytes.
+ */
+public class CommandLog {
+    private static final int MAGIC = 0x44504c47; // "DPLG"
+    private static final int VERSION = 3;
+    static final int LINE = 0;
+    static final int WARNING = 1;
+    static final int TIME_UP = 2;
+
+    private final long seed;
+    private final ByteArrayOutputStream bytes;
+    private final DataOutputStream data;
+    private long lastElapsed;
+    private int entries;
+
+    CommandLog(long seed) {
+        this.seed = seed;
+        bytes = new ByteArrayOutputStream(256);
+        data = new DataOutputStream(bytes);
+        try {
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeLong(seed);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    void record(long elapsedMillis, String line) {
+        try {
+            writeEntry(elapsedMillis, LINE);
+            byte[] utf8 = line.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(utf8.length);
+            data.write(utf8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // A timer firing, WARNING or TIME_UP, replayed at the same elapsed time
+    void recordTimer(long elapsedMillis, int kind) {
+        try {
+            writeEntry(elapsedMillis, kind);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public int size() {
+        return entries;
+    }
+
+    public byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Reruns a recorded session against a fresh game in the given world
+     * (null for the classic dungeon) and returns how it ended. Output goes
+     * to out; the high-score table shown along the way comes from
+     * scoreManager and doesn't affect the session.
+     */
+    public static SessionResult replay(byte[] log, OutputSink out, ScoreManager scoreManager,
+                                       RoomStore world) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(log));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Not a command log");
+        }
+        int version = in.readUnsignedShort();
+        if (version > VERSION) {
+            throw new IOException("Unsupported command log version " + version);
+        }
+        long seed = in.readLong();
+
+        ReplayClock clock = new ReplayClock();
+        Game game = new Game(null, out, scoreManager, world, seed, clock);
+        game.start();
+        while (in.available() > 0) {
+            long raw = readVarLong(in);
+            int kind = version < 2 ? LINE : (int) (raw & 3);
+            long zigzag = version < 2 ? raw : raw >>> 2;
+            clock.time += (zigzag >>> 1) ^ -(zigzag & 1);
+            switch (kind) {
+                case LINE:
+                    game.step(version < 3 ? in.readUTF() : readLine(in));
+                    break;
+                case WARNING:
+                    game.warnTimeRunningOut();
+                    break;
+                case TIME_UP:
+                    game.timeUp();
+                    break;
+                default:
+                    throw new IOException("Corrupt command log");
+            }
+        }
+        return game.getResult();
+    }
+
+    private void writeEntry(long elapsedMillis, int kind) throws IOException {
+        long delta = elapsedMillis - lastElapsed;
+        long zigzag = (delta << 1) ^ (delta >> 63);
+        writeVarLong((zigzag << 2) | kind);
+        lastElapsed = elapsedMillis;
+        entries++;
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            data.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data.writeByte((int) value);
+    }
+
+    private static String readLine(DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length > in.available()) {
+            throw new IOException("Corrupt command log");
+        }
+        byte[] utf8 = new byte[(int) length];
+        in.readFully(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt command log");
+    }
+
+    // Starts at zero; the replay moves it forward to each recorded time
+    private static final class ReplayClock implements GameClock {
+        long time;
+
+        @Override
+        public long millis() {
+            return time;
+        }
+    }
+}
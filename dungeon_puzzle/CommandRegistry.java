@@ -0,0 +1,145 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The verbs a player can type, looked up straight from the input line.
+ * Each verb maps to an action and says whether it takes an argument.
+ * Aliases share their target's action, and every prefix of three or
+ * more letters that only one verb starts with works as an abbreviation,
+ * so "inv" is inventory.
+ *
+ * Names are kept in an open-addressing table hashed without regard to
+ * ASCII case, so finding a verb reads the line in place and allocates
+ * nothing. The table is built once and then only read, so one registry
+ * can serve every session.
+ */
+final class CommandRegistry {
+    private static final int MIN_ABBREVIATION = 3;
+
+    enum Arity { NONE, OPTIONAL, REQUIRED }
+
+    interface Action {
+        void execute(Game game, CommandTokenizer command);
+    }
+
+    static final class Command {
+        final String verb;
+        final Arity arity;
+        final Action action;
+        // Shared by every session, for GameMetrics
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        Command(String verb, Arity arity, Action action) {
+            this.verb = verb;
+            this.arity = arity;
+            this.action = action;
+        }
+
+        boolean accepts(boolean hasArgument) {
+            return hasArgument ? arity != Arity.NONE : arity != Arity.REQUIRED;
+        }
+    }
+
+    private final List<Command> commands = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final List<Command> targets = new ArrayList<>();
+    private String[] keys;
+    private Command[] values;
+    private int mask;
+
+    CommandRegistry register(String verb, Arity arity, Action action) {
+        Command command = new Command(verb, arity, action);
+        commands.add(command);
+        add(verb, command);
+        return this;
+    }
+
+    // Another name for a registered verb
+    CommandRegistry alias(String alias, String verb) {
+        int i = names.indexOf(verb);
+        if (i < 0) {
+            throw new IllegalArgumentException("Unknown verb: " + verb);
+        }
+        add(alias, targets.get(i));
+        return this;
+    }
+
+    /**
+     * Adds the abbreviations and fills the lookup table. Names registered
+     * explicitly win over abbreviations.
+     */
+    CommandRegistry build() {
+        for (Command command : commands) {
+            for (int length = MIN_ABBREVIATION; length < command.verb.length(); length++) {
+                String prefix = command.verb.substring(0, length);
+                if (!names.contains(prefix) && startingWith(prefix) == 1) {
+                    names.add(prefix);
+                    targets.add(command);
+                }
+            }
+        }
+        int capacity = Integer.highestOneBit(Math.max(8, names.size() * 4) - 1) << 1;
+        keys = new String[capacity];
+        values = new Command[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            int slot = hash(name, 0, name.length()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = name;
+            values[slot] = targets.get(i);
+        }
+        return this;
+    }
+
+    List<Command> getCommands() {
+        return Collections.unmodifiableList(commands);
+    }
+
+    // The command named by line[start, end), ignoring case, or null
+    Command lookup(String line, int start, int end) {
+        int length = end - start;
+        for (int slot = hash(line, start, end) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+            String key = keys[slot];
+            if (key.length() == length && line.regionMatches(true, start, key, 0, length)) {
+                return values[slot];
+            }
+        }
+        return null;
+    }
+
+    private void add(String name, Command command) {
+        if (names.contains(name)) {
+            throw new IllegalArgumentException("Already registered: " + name);
+        }
+        names.add(name);
+        targets.add(command);
+    }
+
+    private int startingWith(String prefix) {
+        int count = 0;
+        for (Command command : commands) {
+            if (command.verb.startsWith(prefix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static int hash(String text, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            h = 31 * h + c;
+        }
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,12 @@
+package games.dungeon_puzzle;
+
+/**
+ * Supplies the lines a session reads: commands, puzzle answers and combat
+ * choices all come through the same source.
+ */
+public interface CommandSource {
+    /**
+     * Returns the next input line, or null once the source is exhausted.
+     */
+    String nextLine();
+}
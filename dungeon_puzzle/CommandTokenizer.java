@@ -0,0 +1,96 @@
+package games.dungeon_puzzle;
+
+/**
+ * Splits one command, a range of an input line, into a verb and an
+ * argument without copying anything. Positions index into the line;
+ * only argument() allocates, and only for commands that need the text.
+ * One per session, reset for every command.
+ */
+final class CommandTokenizer {
+    private String line;
+    private int verbStart;
+    private int verbEnd;
+    private int argumentStart;
+    private int end;
+
+    // Trims the range and finds where the verb ends and the argument starts
+    void reset(String line, int start, int end) {
+        while (start < end && Character.isWhitespace(line.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(line.charAt(end - 1))) {
+            end--;
+        }
+        int verbEnd = start;
+        while (verbEnd < end && !Character.isWhitespace(line.charAt(verbEnd))) {
+            verbEnd++;
+        }
+        this.line = line;
+        this.verbStart = start;
+        this.verbEnd = verbEnd;
+        this.end = end;
+        this.argumentStart = skipSpaces(verbEnd);
+    }
+
+    String line() {
+        return line;
+    }
+
+    int verbStart() {
+        return verbStart;
+    }
+
+    int verbEnd() {
+        return verbEnd;
+    }
+
+    boolean isEmpty() {
+        return verbStart == end;
+    }
+
+    boolean hasArgument() {
+        return argumentStart < end;
+    }
+
+    /**
+     * Consumes word at the start of the argument, ignoring case, if it is
+     * followed by more text. "go to crypt" skips "to"; "go to" doesn't.
+     */
+    boolean skipWord(String word) {
+        int wordEnd = argumentStart + word.length();
+        if (wordEnd >= end || !Character.isWhitespace(line.charAt(wordEnd))
+                || !line.regionMatches(true, argumentStart, word, 0, word.length())) {
+            return false;
+        }
+        argumentStart = skipSpaces(wordEnd);
+        return true;
+    }
+
+    // The rest of the command in lower case
+    String argument() {
+        return line.substring(argumentStart, end).toLowerCase();
+    }
+
+    // The argument as a positive number, or -1 if it isn't one
+    int argumentAsInt() {
+        if (!hasArgument() || end - argumentStart > 9) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = argumentStart; i < end; i++) {
+            char c = line.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value > 0 ? value : -1;
+    }
+
+    private int skipSpaces(int from) {
+        while (from < end && Character.isWhitespace(line.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+}
@@ -0,0 +1,40 @@
+package games.dungeon_puzzle;
+
+public enum Direction {
+    NORTH("north"), SOUTH("south"), EAST("east"), WEST("west");
+
+    private static final Direction[] VALUES = values();
+
+    private final String label;
+
+    Direction(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Direction opposite() {
+        switch (this) {
+            case NORTH: return SOUTH;
+            case SOUTH: return NORTH;
+            case EAST: return WEST;
+            default: return EAST;
+        }
+    }
+
+    // Returns null for anything that isn't a direction
+    public static Direction parse(String text) {
+        for (Direction direction : VALUES) {
+            if (direction.label.equals(text)) {
+                return direction;
+            }
+        }
+        return null;
+    }
+
+    public static Direction[] all() {
+        return VALUES;
+    }
+}
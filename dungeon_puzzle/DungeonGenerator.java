@@ -0,0 +1,189 @@
+package games.dungeon_puzzle;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds a width x height dungeon from a seed. Nothing is built up front:
+ * the layout is a pure function of (seed, room id), and a room with its
+ * items is only materialized the first time someone asks for it. A
+ * dungeon of millions of rooms therefore costs memory only for the rooms
+ * players actually reach, and the same seed always gives the same world.
+ *
+ * Room id = y * width + x. Every row is a corridor running east-west,
+ * column 0 links all rows north-south, and other north-south links are
+ * decided per edge by the seed, so the dungeon is always connected.
+ */
+public class DungeonGenerator implements RoomStore {
+    private static final String[] ADJECTIVES = {
+        "Dusty", "Flooded", "Collapsed", "Silent", "Echoing",
+        "Frozen", "Gilded", "Forgotten", "Mossy", "Smoldering"
+    };
+    private static final String[] NOUNS = {
+        "Cell", "Gallery", "Chapel", "Vault", "Armory",
+        "Cistern", "Study", "Ossuary", "Workshop", "Passage"
+    };
+    private static final String[] DETAILS = {
+        "Water drips steadily from the ceiling.",
+        "Faded murals cover the walls.",
+        "The air smells of old smoke.",
+        "Bones crunch underfoot.",
+        "A cold draft whistles through the cracks.",
+        "Cobwebs hang thick in every corner."
+    };
+    private static final int MAX_ITEMS_PER_ROOM = 3;
+    private static final long VERTICAL_SALT = 0x5DEECE66DL;
+
+    private final long seed;
+    private final int width;
+    private final int height;
+    private final Map<Integer, Room> materialized;
+    private ItemIndex index;
+
+    public DungeonGenerator(long seed, int width, int height) {
+        if (width <= 0 || height <= 0 || (long) width * height > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Bad dungeon size " + width + "x" + height);
+        }
+        this.seed = seed;
+        this.width = width;
+        this.height = height;
+        this.materialized = new HashMap<>();
+    }
+
+    @Override
+    public Room getRoom(int id) {
+        if (id < 0 || id >= size()) {
+            return null;
+        }
+        Room room = materialized.get(id);
+        if (room == null) {
+            room = generate(id);
+            room.markClean();
+            room.setStore(this);
+            if (index != null) {
+                room.attachIndex(index);
+            }
+            materialized.put(id, room);
+        }
+        return room;
+    }
+
+    /**
+     * Builds a fresh copy of a room exactly as the seed describes it,
+     * without caching it.
+     */
+    public Room generate(int id) {
+        SplittableRandom random = new SplittableRandom(mix(seed, id));
+        String name = ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+            + NOUNS[random.nextInt(NOUNS.length)] + " #" + id;
+        String description = name + ". " + DETAILS[random.nextInt(DETAILS.length)];
+        Room room = new Room(id, name, description);
+
+        for (Direction direction : Direction.all()) {
+            int neighbor = neighbor(id, direction);
+            if (neighbor >= 0) {
+                room.addExit(direction, neighbor);
+            }
+        }
+
+        int itemCount = random.nextInt(MAX_ITEMS_PER_ROOM + 1);
+        for (int i = 0; i < itemCount; i++) {
+            room.addItem(Game.DUNGEON_ITEMS[random.nextInt(Game.DUNGEON_ITEMS.length)]);
+        }
+        return room;
+    }
+
+    /**
+     * The room reached by leaving id in this direction, or -1. Works without
+     * materializing either room.
+     */
+    public int neighbor(int id, Direction direction) {
+        int x = id % width;
+        int y = id / width;
+        switch (direction) {
+            case EAST: return x + 1 < width ? id + 1 : -1;
+            case WEST: return x > 0 ? id - 1 : -1;
+            case NORTH: return y + 1 < height && verticalLink(x, y) ? id + width : -1;
+            default: return y > 0 && verticalLink(x, y - 1) ? id - width : -1;
+        }
+    }
+
+    @Override
+    public int getExitId(int roomId, Direction direction) {
+        return roomId >= 0 && roomId < size() ? neighbor(roomId, direction) : -1;
+    }
+
+    // Every move changes x or y by one, so Manhattan distance never overestimates
+    @Override
+    public int estimateDistance(int fromId, int toId) {
+        return Math.abs(fromId % width - toId % width) + Math.abs(fromId / width - toId / width);
+    }
+
+    // Whether (x, y) and (x, y + 1) are connected
+    private boolean verticalLink(int x, int y) {
+        return x == 0 || (mix(seed ^ VERTICAL_SALT, (long) y * width + x) & 3) == 0;
+    }
+
+    @Override
+    public int size() {
+        return width * height;
+    }
+
+    @Override
+    public int getStartRoomId() {
+        return 0;
+    }
+
+    // Generated names end in "#<id>"
+    @Override
+    public int findRoom(String name) {
+        int hash = name.lastIndexOf('#');
+        if (hash < 0) {
+            return -1;
+        }
+        try {
+            int id = Integer.parseInt(name.substring(hash + 1).trim());
+            return id >= 0 && id < size() ? id : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    @Override
+    public void attachIndex(ItemIndex index) {
+        this.index = index;
+        for (Room room : materialized.values()) {
+            room.attachIndex(index);
+        }
+    }
+
+    @Override
+    public int[] getChangedRoomIds() {
+        int[] ids = new int[materialized.size()];
+        int count = 0;
+        for (Room room : materialized.values()) {
+            if (room.isModified()) {
+                ids[count++] = room.getId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    public int getMaterializedCount() {
+        return materialized.size();
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    // SplitMix64 finalizer, so neighbouring ids get unrelated streams
+    static long mix(long seed, long id) {
+        long z = seed + (id + 1) * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
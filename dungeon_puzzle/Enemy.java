@@ -1,5 +1,11 @@
 package games.dungeon_puzzle;
 
+import java.util.SplittableRandom;
+
+/**
+ * An enemy in a fight. Spawned enemies come from an EnemySpawner's pool
+ * and are reset from an EnemyType for each fight rather than allocated.
+ */
 public class Enemy {
     private String name;
     private int health;
@@ -9,17 +15,29 @@ public class Enemy {
     private int difficulty;
 
     public Enemy(String name, int health, int attackPower, Item loot, int difficulty) {
+        reset(name, health, attackPower, loot, difficulty);
+    }
+
+    // An empty pool slot, filled by reset before use
+    Enemy() {
+    }
+
+    // Final, since the constructor calls it
+    final void reset(String name, int maxHealth, int attackPower, Item loot, int difficulty) {
         this.name = name;
-        this.health = health;
-        this.maxHealth = health;
+        this.health = maxHealth;
+        this.maxHealth = maxHealth;
         this.attackPower = attackPower;
         this.loot = loot;
         this.difficulty = difficulty;
     }
 
-    public int attack() {
-        // Add some randomness to attack power
-        return attackPower + (int)(Math.random() * 5);
+    void reset(EnemyType type, Item loot) {
+        reset(type.getName(), type.getMaxHealth(), type.getAttackPower(), loot, type.getDifficulty());
+    }
+
+    public int attack(SplittableRandom random) {
+        return CombatRules.enemyDamage(attackPower, random);
     }
 
     public void takeDamage(int damage) {
@@ -45,4 +63,4 @@ public class Enemy {
     public int getDifficulty() { return difficulty; }
     public int getMaxHealth() { return maxHealth; }
     public int getAttackPower() { return attackPower; }
-} 
\ No newline at end of file
+}
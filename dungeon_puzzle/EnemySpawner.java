@@ -1,58 +1,71 @@
 package games.dungeon_puzzle;
 
-import java.util.PriorityQueue;
-import java.util.Comparator;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.SplittableRandom;
 
+/**
+ * Spawns enemies for one session from a shared SpawnTable, at a difficulty
+ * that rises with the puzzles solved. Enemies come from a small pool and
+ * go back to it with release() once their fight is over, so a session
+ * reuses the same few instances however many fights it has.
+ */
 public class EnemySpawner {
-    private PriorityQueue<Enemy> enemyQueue;
+    private final SpawnTable table;
+    private final ArrayDeque<Enemy> pool = new ArrayDeque<>();
     private int puzzlesSolved;  // Track player progress
+    private int tier;  // The table's tier for the current difficulty
 
     public EnemySpawner() {
-        // Initialize queue with custom comparator based on enemy difficulty
-        enemyQueue = new PriorityQueue<>(new Comparator<Enemy>() {
-            @Override
-            public int compare(Enemy e1, Enemy e2) {
-                return Integer.compare(e1.getDifficulty(), e2.getDifficulty());
-            }
-        });
-        initializeEnemies();
-    }
-
-    private void initializeEnemies() {
-        // Add enemies in order of difficulty
-        enemyQueue.offer(new Enemy("Skeleton", 30, 10, new Item("bone", "A mysterious glowing bone", 15), 1));
-        enemyQueue.offer(new Enemy("Ghost", 20, 15, new Item("ectoplasm", "A ghostly substance", 20), 2));
-        enemyQueue.offer(new Enemy("Goblin", 40, 8, new Item("gold_coin", "A shiny gold coin", 25), 3));
-        enemyQueue.offer(new Enemy("Dark Wizard", 50, 12, new Item("spell_scroll", "A powerful magic scroll", 30), 4));
-    }
-
-    public Enemy getNextEnemy() {
-        // Return appropriate enemy based on puzzles solved
-        Enemy enemy = null;
-        for (Enemy e : enemyQueue) {
-            if (e.getDifficulty() <= puzzlesSolved + 1) {
-                enemy = e;
-                break;
-            }
-        }
-        return enemy != null ? createEnemyCopy(enemy) : createDefaultEnemy();
+        this(SpawnTable.STANDARD);
+    }
+
+    public EnemySpawner(SpawnTable table) {
+        this.table = table;
+        this.tier = table.tierFor(1);
+    }
+
+    // A type drawn for the current difficulty, with its loot rolled
+    public Enemy getNextEnemy(SplittableRandom random) {
+        return spawn(table.sampleTier(tier, random), random);
+    }
+
+    // The toughest enemy the player could meet right now
+    public Enemy getHardestEnemy(SplittableRandom random) {
+        return spawn(table.hardestAt(puzzlesSolved + 1), random);
+    }
+
+    public Enemy spawn(EnemyType type, SplittableRandom random) {
+        Enemy enemy = take();
+        enemy.reset(type, type.rollLoot(random));
+        return enemy;
+    }
+
+    // For restoring a checkpoint: an enemy mid-fight, as saved
+    Enemy restore(String name, int maxHealth, int health, int attackPower, int difficulty, Item loot) {
+        Enemy enemy = take();
+        enemy.reset(name, maxHealth, attackPower, loot, difficulty);
+        enemy.takeDamage(maxHealth - health);
+        return enemy;
+    }
+
+    // The enemy must not be used again until it is spawned anew
+    public void release(Enemy enemy) {
+        pool.push(enemy);
     }
 
     public void updateProgress(int solvedPuzzles) {
         this.puzzlesSolved = solvedPuzzles;
+        this.tier = table.tierFor(solvedPuzzles + 1);
     }
 
-    private Enemy createEnemyCopy(Enemy original) {
-        return new Enemy(
-            original.getName(),
-            original.getMaxHealth(),
-            original.getAttackPower(),
-            original.getLoot(),
-            original.getDifficulty()
-        );
+    // Every enemy type, easiest first
+    public List<EnemyType> getEnemyTypes() {
+        return table.getTypes();
     }
 
-    private Enemy createDefaultEnemy() {
-        return new Enemy("Skeleton", 30, 10, new Item("bone", "A mysterious glowing bone", 15), 1);
+    private Enemy take() {
+        Enemy enemy = pool.poll();
+        return enemy != null ? enemy : new Enemy();
     }
-} 
\ No newline at end of file
+}
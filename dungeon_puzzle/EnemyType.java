@@ -0,0 +1,52 @@
+package games.dungeon_puzzle;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * One kind of enemy: its stats, how often it spawns relative to the rest
+ * of its table, and the loot it can drop, each with its own weight.
+ * Immutable, and shared by every session that uses its SpawnTable.
+ */
+public final class EnemyType {
+    private final String name;
+    private final int maxHealth;
+    private final int attackPower;
+    private final int difficulty;
+    private final double weight;
+    private final Item[] loot;
+    private final AliasTable lootTable;
+
+    public EnemyType(String name, int maxHealth, int attackPower, int difficulty, double weight, Item loot) {
+        this(name, maxHealth, attackPower, difficulty, weight, List.of(loot), new double[] {1});
+    }
+
+    public EnemyType(String name, int maxHealth, int attackPower, int difficulty, double weight,
+                     List<Item> loot, double[] lootWeights) {
+        if (difficulty < 1 || difficulty > SpawnTable.MAX_DIFFICULTY) {
+            throw new IllegalArgumentException("Difficulty out of range: " + difficulty);
+        }
+        if (loot.size() != lootWeights.length) {
+            throw new IllegalArgumentException("Every loot item needs a weight");
+        }
+        this.name = name;
+        this.maxHealth = maxHealth;
+        this.attackPower = attackPower;
+        this.difficulty = difficulty;
+        this.weight = weight;
+        this.loot = loot.toArray(new Item[0]);
+        this.lootTable = new AliasTable(Arrays.copyOf(lootWeights, lootWeights.length));
+    }
+
+    // A single possible drop costs no random draw
+    public Item rollLoot(SplittableRandom random) {
+        return loot[lootTable.sample(random)];
+    }
+
+    public String getName() { return name; }
+    public int getMaxHealth() { return maxHealth; }
+    public int getAttackPower() { return attackPower; }
+    public int getDifficulty() { return difficulty; }
+    public double getWeight() { return weight; }
+}
@@ -0,0 +1,231 @@
+package games.dungeon_puzzle;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A session's events in a preallocated ring of GameEvent slots. The game
+ * is the only publisher; publishing fills the next slot in place and
+ * moves a cursor, so it allocates nothing.
+ *
+ * Handlers see events in order and in batches. Inline handlers run on the
+ * game's thread whenever drain() is called, which the game does at the
+ * end of every input line. Async handlers run on a thread of the
+ * caller's choosing through the Runnable subscribeAsync returns, and
+ * catch up on everything published since their last batch. The publisher
+ * never overwrites a slot a handler hasn't seen yet: with the ring full
+ * it drains inline handlers itself and waits for async ones.
+ *
+ * An async handler leaves the bus when its Runnable returns, whether
+ * because the bus closed or because the handler threw. The publisher
+ * waits at most MAX_WAIT_NANOS for async handlers to make room. Any
+ * still a whole ring behind after that, such as one whose Runnable was
+ * never started, is dropped and counted in getDroppedHandlers(), and the
+ * publisher goes on to reuse the slots it hadn't read. So async handlers
+ * are handed a copy of each event, taken from the slot and checked
+ * against the slot's sequence afterwards; a copy the publisher overwrote
+ * midway is thrown away and the dropped handler's Runnable returns.
+ */
+public class EventBus {
+    public static final int DEFAULT_CAPACITY = 1024;
+    // How long a full ring holds up the game before lagging handlers are dropped
+    static final long MAX_WAIT_NANOS = 1_000_000_000L;
+
+    public interface Handler {
+        // endOfBatch is true for the last event currently available
+        void onEvent(GameEvent event, boolean endOfBatch);
+    }
+
+    private static final class Subscription {
+        final Handler handler;
+        // Sequence of the last event this handler has finished with
+        final AtomicLong sequence;
+        // What an async handler is handed instead of the slot itself; null inline
+        final GameEvent copy;
+        // The thread running an async handler, woken when the ring fills
+        volatile Thread thread;
+        volatile boolean dropped;
+
+        Subscription(Handler handler, long sequence, boolean async) {
+            this.handler = handler;
+            this.sequence = new AtomicLong(sequence);
+            this.copy = async ? new GameEvent() : null;
+        }
+    }
+
+    private final GameEvent[] ring;
+    private final int mask;
+    // Sequence of the last published event
+    private final AtomicLong cursor = new AtomicLong(-1);
+    private long next;
+    private volatile Subscription[] inline = new Subscription[0];
+    private volatile Subscription[] async = new Subscription[0];
+    private volatile boolean closed;
+    private volatile int droppedHandlers;
+
+    public EventBus() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public EventBus(int capacity) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, got " + capacity);
+        }
+        ring = new GameEvent[capacity];
+        for (int i = 0; i < capacity; i++) {
+            ring[i] = new GameEvent();
+        }
+        mask = capacity - 1;
+    }
+
+    public void publish(GameEvent.Type type, int roomId, int value, String subject, long elapsedMillis) {
+        long sequence = next;
+        if (sequence - ring.length > slowestSequence()) {
+            makeRoom(sequence);
+        }
+        ring[(int) sequence & mask].set(sequence, type, roomId, value, subject, elapsedMillis);
+        next = sequence + 1;
+        cursor.lazySet(sequence);
+    }
+
+    /**
+     * Hands every event published since the last drain to the inline
+     * handlers. Call from the publishing thread.
+     */
+    public void drain() {
+        long published = cursor.get();
+        for (Subscription subscription : inline) {
+            consume(subscription, published);
+        }
+    }
+
+    // Events published before subscribing are not delivered
+    public synchronized void subscribe(Handler handler) {
+        Subscription[] current = inline;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = new Subscription(handler, cursor.get(), false);
+        inline = updated;
+    }
+
+    /**
+     * Registers a handler to run off the game's thread. The returned
+     * Runnable processes batches until the bus is closed and everything
+     * published has been handled; run it on whatever thread suits.
+     */
+    public synchronized Runnable subscribeAsync(Handler handler) {
+        Subscription subscription = new Subscription(handler, cursor.get(), true);
+        Subscription[] current = async;
+        Subscription[] updated = Arrays.copyOf(current, current.length + 1);
+        updated[current.length] = subscription;
+        async = updated;
+        return () -> runAsync(subscription);
+    }
+
+    // Lets async handlers finish what is left and return. Call once the
+    // game has stopped publishing
+    public void close() {
+        closed = true;
+    }
+
+    public long getPublishedCount() {
+        return cursor.get() + 1;
+    }
+
+    public int getCapacity() {
+        return ring.length;
+    }
+
+    // Async handlers dropped for holding up a full ring
+    public int getDroppedHandlers() {
+        return droppedHandlers;
+    }
+
+    private void runAsync(Subscription subscription) {
+        subscription.thread = Thread.currentThread();
+        try {
+            int idle = 0;
+            while (!subscription.dropped) {
+                boolean closing = closed;
+                long published = cursor.get();
+                if (published > subscription.sequence.get()) {
+                    consume(subscription, published);
+                    idle = 0;
+                } else if (closing) {
+                    return;
+                } else if (++idle < 100) {
+                    Thread.onSpinWait();
+                } else {
+                    LockSupport.parkNanos(100_000);
+                }
+            }
+        } finally {
+            subscription.thread = null;
+            unsubscribeAsync(subscription);
+        }
+    }
+
+    private synchronized void unsubscribeAsync(Subscription subscription) {
+        Subscription[] current = async;
+        int at = Arrays.asList(current).indexOf(subscription);
+        if (at >= 0) {
+            Subscription[] updated = Arrays.copyOf(current, current.length - 1);
+            System.arraycopy(current, at + 1, updated, at, current.length - at - 1);
+            async = updated;
+        }
+    }
+
+    private void consume(Subscription subscription, long published) {
+        long sequence = subscription.sequence.get();
+        while (sequence < published && !subscription.dropped) {
+            GameEvent event = ring[(int) (sequence + 1) & mask];
+            if (subscription.copy != null) {
+                if (!subscription.copy.copyFrom(event, sequence + 1)) {
+                    // Only a dropped handler's slots are ever reused under it
+                    subscription.dropped = true;
+                    break;
+                }
+                event = subscription.copy;
+            }
+            sequence++;
+            subscription.handler.onEvent(event, sequence == published);
+        }
+        subscription.sequence.lazySet(sequence);
+    }
+
+    private long slowestSequence() {
+        long slowest = Long.MAX_VALUE;
+        for (Subscription subscription : inline) {
+            slowest = Math.min(slowest, subscription.sequence.get());
+        }
+        for (Subscription subscription : async) {
+            slowest = Math.min(slowest, subscription.sequence.get());
+        }
+        return slowest;
+    }
+
+    private void makeRoom(long sequence) {
+        drain();
+        long deadline = System.nanoTime() + MAX_WAIT_NANOS;
+        while (sequence - ring.length > slowestSequence()) {
+            if (System.nanoTime() - deadline > 0) {
+                dropLagging(sequence);
+                return;
+            }
+            for (Subscription subscription : async) {
+                LockSupport.unpark(subscription.thread);
+            }
+            Thread.yield();
+        }
+    }
+
+    private void dropLagging(long sequence) {
+        for (Subscription subscription : async) {
+            if (sequence - ring.length > subscription.sequence.get()) {
+                subscription.dropped = true;
+                droppedHandlers++;
+                unsubscribeAsync(subscription);
+            }
+        }
+    }
+}
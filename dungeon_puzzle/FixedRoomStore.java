@@ -0,0 +1,78 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A hand-built world that lives entirely in memory.
+ */
+public class FixedRoomStore implements RoomStore {
+    private final List<Room> rooms;
+    private final Map<String, Integer> roomIds;
+    private ItemIndex index;
+
+    public FixedRoomStore() {
+        rooms = new ArrayList<>();
+        roomIds = new HashMap<>();
+    }
+
+    public void add(Room room) {
+        if (room.getId() != rooms.size()) {
+            throw new IllegalArgumentException("Room ids must be added in order, expected " + rooms.size());
+        }
+        rooms.add(room);
+        roomIds.put(room.getName().toLowerCase(), room.getId());
+        room.setStore(this);
+        if (index != null) {
+            room.attachIndex(index);
+        }
+    }
+
+    @Override
+    public Room getRoom(int id) {
+        return id >= 0 && id < rooms.size() ? rooms.get(id) : null;
+    }
+
+    @Override
+    public int size() {
+        return rooms.size();
+    }
+
+    @Override
+    public int getStartRoomId() {
+        return 0;
+    }
+
+    @Override
+    public int getExitId(int roomId, Direction direction) {
+        Room room = getRoom(roomId);
+        return room != null ? room.getExitId(direction) : -1;
+    }
+
+    // Hand-placed items can't be rebuilt, so every room counts as changed
+    @Override
+    public int[] getChangedRoomIds() {
+        int[] ids = new int[rooms.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = i;
+        }
+        return ids;
+    }
+
+    // Case-insensitive, since commands arrive lower-cased
+    @Override
+    public int findRoom(String name) {
+        Integer id = roomIds.get(name.toLowerCase());
+        return id != null ? id : -1;
+    }
+
+    @Override
+    public void attachIndex(ItemIndex index) {
+        this.index = index;
+        for (Room room : rooms) {
+            room.attachIndex(index);
+        }
+    }
+}
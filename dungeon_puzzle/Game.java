@@ -1,68 +1,252 @@
 package games.dungeon_puzzle;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.PrintStream;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
 public class Game {
-    private Map<String, Room> rooms;
-    private Room currentRoom;
+    // Every item that can be found lying around the dungeon
+    static final Item[] DUNGEON_ITEMS = {
+        // Light Ritual Items (need 25+ points)
+        ItemCatalog.intern("torch", "A burning torch", 10, Item.Category.LIGHT),
+        ItemCatalog.intern("crystal", "A glowing crystal", 20, Item.Category.LIGHT),
+        ItemCatalog.intern("orb", "A mystical orb", 30, Item.Category.LIGHT),
+        
+        // Ancient Text Items (need 35+ points)
+        ItemCatalog.intern("book", "An ancient spellbook", 15, Item.Category.TEXT),
+        ItemCatalog.intern("scroll", "A mysterious scroll", 25, Item.Category.TEXT),
+        ItemCatalog.intern("relic", "An ancient relic", 40, Item.Category.TEXT),
+        
+        // Portal Items (need 60+ points)
+        ItemCatalog.intern("amulet", "A magical amulet", 35, Item.Category.PORTAL),
+        ItemCatalog.intern("wand", "A powerful wand", 30, Item.Category.PORTAL),
+        ItemCatalog.intern("crown", "A golden crown", 35, Item.Category.PORTAL),
+        
+        // Support Items
+        ItemCatalog.intern("potion", "A healing potion", 15, Item.Category.SUPPORT),
+        ItemCatalog.intern("gem", "A power-enhancing gem", 20, Item.Category.SUPPORT),
+        ItemCatalog.intern("ring", "A magic ring", 25, Item.Category.SUPPORT),
+        
+        // Common Items
+        ItemCatalog.intern("key", "A rusty key", 5),
+        ItemCatalog.intern("map", "A torn map", 5),
+        ItemCatalog.intern("compass", "A broken compass", 5)
+    };
+
+    private static final Item POTION = ItemCatalog.find("potion");
+
+    private final RoomStore world;
+    private final RouteService routes;
+    private int currentRoomId;
     private MovementHistory moveHistory;
-    private Map<String, Item> inventory;
-    private Queue<GameEvent> eventQueue;
+    private Inventory inventory;
+    private ItemIndex itemIndex;
+    private final PuzzleSolver puzzleSolver = new PuzzleSolver();
+    private final RequirementTracker requirements = new RequirementTracker();
+    private final EventBus events;
     private PriorityQueue<Puzzle> puzzles;
     private Set<String> completedPuzzles;
     private int score;
     private EnemySpawner enemySpawner;
     private static final int TOTAL_ITEMS = 6;
     private static final int TOTAL_PUZZLES = 3;
+    private static final int MAX_LISTED_STEPS = 12;
+    // Enough fights for an estimate within a percent or two, in about a millisecond
+    private static final int DANGER_FIGHTS = 4096;
+    private static final CombatEstimator ESTIMATOR = new CombatEstimator();
+    private static final GameMetrics METRICS = GameMetrics.GLOBAL;
+    // Encoded once: the help screen is the same for every session
+    private static final byte[] HELP_TEXT = TurnRenderer.encode(String.join("\n",
+        "Available commands:",
+        "  go <direction> - Move in a direction (north, south, east, west)",
+        "  go to <room>  - Take one step towards a room",
+        "  route <room>  - Show the way to a room",
+        "  find <item>   - Show the way to the nearest known item",
+        "  look          - Look around the current room",
+        "  inventory     - Show your inventory",
+        "  take <item>   - Take an item from the room",
+        "  drop <item>   - Drop an item from your inventory",
+        "  solve         - Try to solve the current puzzle",
+        "  status        - Show game progress",
+        "  back [n]      - Go back to the previous room, or n rooms back",
+        "  return <room> - Retrace your steps to a room you visited",
+        "  scores        - Show high scores",
+        "  help          - Show this help message",
+        "  quit          - Exit the game",
+        "  forward [n]   - Move forward in your path",
+        "  hint          - Show hint for current puzzle",
+        "  search        - Search for items in a value range",
+        "  danger        - Estimate how a fight here would go",
+        "  need          - Show which items would solve the current puzzle",
+        "Shortcuts: n, s, e, w to move, l to look, i for inventory, and any",
+        "unambiguous first three letters of a command. Separate several",
+        "commands on one line with ';'.",
+        ""));
+
+    static final CommandRegistry COMMANDS = new CommandRegistry()
+        .register("help", CommandRegistry.Arity.NONE, (game, command) -> game.showHelp())
+        .register("look", CommandRegistry.Arity.NONE, (game, command) -> game.look())
+        .register("inventory", CommandRegistry.Arity.NONE, (game, command) -> game.showInventory())
+        .register("solve", CommandRegistry.Arity.NONE, (game, command) -> game.solvePuzzle())
+        .register("status", CommandRegistry.Arity.NONE, (game, command) -> game.showStatus())
+        .register("scores", CommandRegistry.Arity.NONE, (game, command) -> game.showHighScores())
+        .register("quit", CommandRegistry.Arity.NONE, (game, command) -> game.quit())
+        .register("hint", CommandRegistry.Arity.NONE, (game, command) -> game.showHint())
+        .register("search", CommandRegistry.Arity.NONE, (game, command) -> game.handleSearchCommand())
+        .register("danger", CommandRegistry.Arity.NONE, (game, command) -> game.showDanger())
+        .register("need", CommandRegistry.Arity.NONE, (game, command) -> game.showNeeds())
+        .register("back", CommandRegistry.Arity.OPTIONAL, (game, command) -> game.goBack(game.parseSteps(command)))
+        .register("forward", CommandRegistry.Arity.OPTIONAL,
+            (game, command) -> game.goForward(game.parseSteps(command)))
+        .register("return", CommandRegistry.Arity.REQUIRED, (game, command) -> game.returnTo(command.argument()))
+        .register("go", CommandRegistry.Arity.REQUIRED, Game::go)
+        .register("route", CommandRegistry.Arity.REQUIRED, (game, command) -> game.showRoute(command.argument()))
+        .register("find", CommandRegistry.Arity.REQUIRED, (game, command) -> game.findItem(command.argument()))
+        .register("take", CommandRegistry.Arity.REQUIRED, (game, command) -> game.takeItem(command.argument()))
+        .register("drop", CommandRegistry.Arity.REQUIRED, (game, command) -> game.dropItem(command.argument()))
+        .register("north", CommandRegistry.Arity.NONE, (game, command) -> game.move("north"))
+        .register("south", CommandRegistry.Arity.NONE, (game, command) -> game.move("south"))
+        .register("east", CommandRegistry.Arity.NONE, (game, command) -> game.move("east"))
+        .register("west", CommandRegistry.Arity.NONE, (game, command) -> game.move("west"))
+        .alias("n", "north")
+        .alias("s", "south")
+        .alias("e", "east")
+        .alias("w", "west")
+        .alias("l", "look")
+        .alias("i", "inventory")
+        .alias("inv", "inventory")
+        .alias("?", "help")
+        .build();
+
+    // A line publishes a handful of events and they're drained after each
+    private static final int EVENT_RING_SIZE = 64;
     private Map<String, List<Item>> requiredItemsForPuzzle;
     private Player player;
     private long startTime;
     private static final long TIME_LIMIT = 300000; // 5 minutes in milliseconds
+    private static final long WARNING_TIME = 60000; // warn with a minute to go
     private boolean timeExpired = false;
-    private static List<Score> highScores = new ArrayList<>();
-    private static final int MAX_HIGH_SCORES = 10;
+    private TimingWheel.Timeout warningTimer;
+    private TimingWheel.Timeout limitTimer;
+    // When the clock was paused, or -1 while it runs
+    private long pausedAt = -1;
+    private final ScoreManager scoreManager;
     private String playerName;
+    private final CommandSource input;
+    private final TurnRenderer out;
+    private State state;
+    private Puzzle pendingPuzzle;
+    private Enemy combatEnemy;
+    private int searchMinValue;
+    // Only used while a search prints its results
+    private int searchMaxValue;
+    private boolean searchFound;
+    private boolean won;
+    private boolean died;
+    private int turns;
+    private long seed;
+    private long steps;
+    private SplittableRandom random;
+    private final GameClock clock;
+    private long now;
+    private CommandLog commandLog;
+    private final CommandTokenizer command = new CommandTokenizer();
+    private final ItemIndex.Visitor searchPrinter = this::printSearchResult;
 
     public Game() {
-        rooms = new HashMap<>();
+        this(ReaderCommandSource.console(), OutputSink.console(), SharedScores.INSTANCE, null);
+    }
+
+    public Game(CommandSource input, PrintStream out) {
+        this(input, out, SharedScores.INSTANCE);
+    }
+
+    // For front ends that push input through step() instead of calling play()
+    public Game(PrintStream out, ScoreManager scoreManager) {
+        this(null, out, scoreManager);
+    }
+
+    public Game(OutputSink out, ScoreManager scoreManager) {
+        this(null, out, scoreManager, null);
+    }
+
+    public Game(CommandSource input, PrintStream out, ScoreManager scoreManager) {
+        this(input, out, scoreManager, null);
+    }
+
+    public Game(CommandSource input, PrintStream out, ScoreManager scoreManager, RoomStore world) {
+        this(input, OutputSink.of(out), scoreManager, world);
+    }
+
+    public Game(CommandSource input, OutputSink out, ScoreManager scoreManager, RoomStore world) {
+        this(input, out, scoreManager, world, ThreadLocalRandom.current().nextLong(), GameClock.SYSTEM);
+    }
+
+    /**
+     * Plays in the given world, or in the classic six-room dungeon when
+     * world is null. Every random choice in the session comes from seed,
+     * and every time reading from clock. Output is rendered a turn at a
+     * time and written to out once per input line.
+     */
+    public Game(CommandSource input, OutputSink out, ScoreManager scoreManager, RoomStore world,
+                long seed, GameClock clock) {
+        this.input = input;
+        this.out = new TurnRenderer(out);
+        this.scoreManager = scoreManager;
+        this.seed = seed;
+        this.clock = clock;
+        random = new SplittableRandom(seed);
         moveHistory = new MovementHistory();
-        inventory = new HashMap<>();
-        eventQueue = new LinkedList<>();
+        itemIndex = new ItemIndex();
+        events = new EventBus(EVENT_RING_SIZE);
+        events.subscribe(METRICS);
         puzzles = new PriorityQueue<>(Comparator.comparingInt(Puzzle::getDifficulty));
         completedPuzzles = new HashSet<>();
         score = 0;
         requiredItemsForPuzzle = new HashMap<>();
         player = new Player();
+        inventory = player.getInventory();
         enemySpawner = new EnemySpawner();
+        state = State.NOT_STARTED;
+        this.world = world != null ? world : createRooms();
+        routes = new RouteService(this.world, itemIndex);
         initializeGame();
-        startTime = System.currentTimeMillis();
+        now = clock.millis();
+        startTime = now;
     }
 
     private void initializeGame() {
-        createRooms();
+        world.attachIndex(itemIndex);
+        currentRoomId = world.getStartRoomId();
+        moveHistory.addMove(currentRoomId);
         initializePuzzles();
-        initializePuzzleRequirements();
     }
 
-    private void createRooms() {
-        Room entrance = new Room("Entrance", "A dimly lit entrance to an ancient dungeon.");
-        Room hallway = new Room("Hallway", "A long, dark hallway with torches on the walls.");
-        Room library = new Room("Library", "An old library filled with dusty books.");
-        Room treasury = new Room("Treasury", "A room that once held valuable treasures.");
-        Room laboratory = new Room("Laboratory", "A mysterious room with ancient equipment.");
-        Room crypt = new Room("Crypt", "A spooky crypt with mysterious symbols.");
+    private FixedRoomStore createRooms() {
+        Room entrance = new Room(0, "Entrance", "A dimly lit entrance to an ancient dungeon.");
+        Room hallway = new Room(1, "Hallway", "A long, dark hallway with torches on the walls.");
+        Room library = new Room(2, "Library", "An old library filled with dusty books.");
+        Room treasury = new Room(3, "Treasury", "A room that once held valuable treasures.");
+        Room laboratory = new Room(4, "Laboratory", "A mysterious room with ancient equipment.");
+        Room crypt = new Room(5, "Crypt", "A spooky crypt with mysterious symbols.");
+        
+        FixedRoomStore store = new FixedRoomStore();
+        store.add(entrance);
+        store.add(hallway);
+        store.add(library);
+        store.add(treasury);
+        store.add(laboratory);
+        store.add(crypt);
         
         connectRooms(entrance, hallway, library, treasury, laboratory, crypt);
         distributeItems(entrance, hallway, library, treasury, laboratory, crypt);
         
-        rooms.put("Entrance", entrance);
-        rooms.put("Hallway", hallway);
-        rooms.put("Library", library);
-        rooms.put("Treasury", treasury);
-        rooms.put("Laboratory", laboratory);
-        rooms.put("Crypt", crypt);
-        
-        currentRoom = entrance;
+        return store;
     }
 
     private void connectRooms(Room... roomArray) {
@@ -88,66 +272,32 @@ public class Game {
     }
 
     private void initializePuzzles() {
-        puzzles.offer(new Puzzle("LIGHT_RITUAL", 1,
+        addPuzzle(new Puzzle("LIGHT_RITUAL", 1,
             "The room is pitch black. You need items worth at least 25 points for the light ritual.",
-            "torch and crystal"));
+            "torch and crystal", 25, Set.of("torch", "crystal", "orb"), List.of(
+                ItemCatalog.find("torch"), ItemCatalog.find("crystal"))));
 
-        puzzles.offer(new Puzzle("ANCIENT_TEXT", 2,
+        addPuzzle(new Puzzle("ANCIENT_TEXT", 2,
             "Ancient text needs powerful items (35+ points combined) to decipher.",
-            "book and scroll"));
+            "book and scroll", 35, Set.of("book", "scroll", "relic"), List.of(
+                ItemCatalog.find("book"), ItemCatalog.find("scroll"))));
 
-        puzzles.offer(new Puzzle("PORTAL", 3,
+        addPuzzle(new Puzzle("PORTAL", 3,
             "Portal requires your most powerful items (60+ points combined).",
-            "amulet and wand"));
+            "amulet and wand", 60, Set.of("amulet", "wand", "crown"), List.of(
+                ItemCatalog.find("amulet"), ItemCatalog.find("wand"))));
     }
 
-    private void initializePuzzleRequirements() {
-        List<Item> lightRitualItems = new ArrayList<>();
-        lightRitualItems.add(new Item("torch", "A burning torch", 5));
-        lightRitualItems.add(new Item("crystal", "A glowing crystal", 20));
-        requiredItemsForPuzzle.put("LIGHT_RITUAL", lightRitualItems);
-
-        List<Item> textItems = new ArrayList<>();
-        textItems.add(new Item("book", "An ancient spellbook", 15));
-        textItems.add(new Item("scroll", "A mysterious scroll", 12));
-        requiredItemsForPuzzle.put("ANCIENT_TEXT", textItems);
-
-        List<Item> portalItems = new ArrayList<>();
-        portalItems.add(new Item("amulet", "A magical amulet", 30));
-        portalItems.add(new Item("wand", "A wooden wand", 15));
-        requiredItemsForPuzzle.put("PORTAL", portalItems);
+    private void addPuzzle(Puzzle puzzle) {
+        puzzles.offer(puzzle);
+        requiredItemsForPuzzle.put(puzzle.getType(), puzzle.getRequiredItems());
+        requirements.addPuzzle(puzzle);
     }
 
     private void distributeItems(Room... rooms) {
-        Item[] allItems = {
-            // Light Ritual Items (need 25+ points)
-            new Item("torch", "A burning torch", 10),
-            new Item("crystal", "A glowing crystal", 20),
-            new Item("orb", "A mystical orb", 30),
-            
-            // Ancient Text Items (need 35+ points)
-            new Item("book", "An ancient spellbook", 15),
-            new Item("scroll", "A mysterious scroll", 25),
-            new Item("relic", "An ancient relic", 40),
-            
-            // Portal Items (need 60+ points)
-            new Item("amulet", "A magical amulet", 35),
-            new Item("wand", "A powerful wand", 30),
-            new Item("crown", "A golden crown", 35),
-            
-            // Support Items
-            new Item("potion", "A healing potion", 15),
-            new Item("gem", "A power-enhancing gem", 20),
-            new Item("ring", "A magic ring", 25),
-            
-            // Common Items
-            new Item("key", "A rusty key", 5),
-            new Item("map", "A torn map", 5),
-            new Item("compass", "A broken compass", 5)
-        };
+        Item[] allItems = DUNGEON_ITEMS.clone();
         
         // Knuth shuffle
-        Random random = new Random();
         for (int i = allItems.length - 1; i > 0; i--) {
             int j = random.nextInt(i + 1);
             Item temp = allItems[i];
@@ -164,274 +314,657 @@ public class Game {
         }
     }
 
-    public void play() {
-        Scanner scanner = new Scanner(System.in);
-        boolean playing = true;
+    /**
+     * What the next input line means. Every prompt that used to block on
+     * input is a state here, so one line in produces one turn of output.
+     */
+    private enum State {
+        NOT_STARTED, AWAITING_NAME, AWAITING_COMMAND, AWAITING_ANSWER,
+        AWAITING_SEARCH_MIN, AWAITING_SEARCH_MAX, IN_COMBAT, FINISHED
+    }
 
-        System.out.println("Welcome to Dungeon Puzzler!");
-        System.out.println("A Text-Based Adventure Game");
-        System.out.println("Enter your name:");
-        playerName = scanner.nextLine();
-        
-        System.out.println("You have 10 minutes to collect items and solve all puzzles!");
-        System.out.println("Type 'help' for a list of commands.");
+    public SessionResult play() {
+        if (state == State.NOT_STARTED) {
+            start();
+        } else {
+            resume();
+        }
+        while (isActive()) {
+            out.flush();
+            String line = input.nextLine();
+            if (line == null) {
+                break;
+            }
+            step(line);
+        }
+        out.flush();
+        return getResult();
+    }
 
-        while (playing && !timeExpired) {
-            checkTimeAndDisplay();
-            
-            System.out.println("\n" + currentRoom.getDescription());
-            System.out.print("> ");
-            String command = scanner.nextLine().toLowerCase();
-            
-            processCommand(command, scanner);
-            processEvents();
-            
-            if (checkWinCondition()) {
-                handleWin();
-                playing = false;
+    public void start() {
+        out.println("Welcome to Dungeon Puzzler!");
+        out.println("A Text-Based Adventure Game");
+        out.println("Enter your name:");
+        state = State.AWAITING_NAME;
+        out.flush();
+    }
+
+    /**
+     * Repeats whatever the session is waiting for, so a player restored
+     * from a checkpoint sees where they left off.
+     */
+    public void resume() {
+        switch (state) {
+            case AWAITING_NAME:
+                out.println("Enter your name:");
+                break;
+            case AWAITING_COMMAND:
+                promptForCommand();
+                break;
+            case AWAITING_ANSWER:
+                out.println(pendingPuzzle.getQuestion());
+                out.print("Your answer: ");
+                break;
+            case AWAITING_SEARCH_MIN:
+                out.println("Enter minimum value:");
+                break;
+            case AWAITING_SEARCH_MAX:
+                out.println("Enter maximum value:");
+                break;
+            case IN_COMBAT:
+                displayCombatStatus(combatEnemy);
+                break;
+            default:
+                break;
+        }
+        out.flush();
+    }
+
+    /**
+     * Feeds one line of input to the session and writes the resulting
+     * output, ending with the next prompt, to the sink in a single write.
+     * Once the player is named, a line may hold several inputs separated
+     * by ';', handled in order as if sent one at a time; the batch stops
+     * early if the session ends. Returns whether the session is still
+     * running.
+     */
+    public boolean step(String line) {
+        if (pausedAt >= 0) {
+            resumeClock();
+        }
+        now = clock.millis();
+        // Reseeded per line, so a checkpoint only needs (seed, steps) to carry on
+        random = new SplittableRandom(DungeonGenerator.mix(seed, steps++));
+        if (commandLog != null) {
+            commandLog.record(now - startTime, line);
+        }
+        int separator = state == State.AWAITING_NAME ? -1 : line.indexOf(';');
+        if (separator < 0) {
+            stepInput(line, 0, line.length());
+        } else {
+            int start = 0;
+            while (isActive() && start <= line.length()) {
+                int end = separator >= 0 ? separator : line.length();
+                if (!isBlank(line, start, end)) {
+                    stepInput(line, start, end);
+                }
+                start = end + 1;
+                separator = line.indexOf(';', start);
+            }
+        }
+        events.drain();
+        out.flush();
+        if (!isActive()) {
+            disarmTimers();
+        }
+        return isActive();
+    }
+
+    /**
+     * Puts the one-minute warning and the time limit on a shared wheel, so
+     * they fire even if the player never types again. Each firing is handed
+     * to runOnSession, which must run it wherever step() runs for this
+     * session; its output is flushed to the sink like a turn's.
+     */
+    public void armTimers(TimingWheel wheel, Executor runOnSession) {
+        disarmTimers();
+        long remaining = TIME_LIMIT - (clock.millis() - startTime);
+        if (remaining > WARNING_TIME) {
+            warningTimer = wheel.schedule(TimeUnit.MILLISECONDS.toNanos(remaining - WARNING_TIME),
+                () -> runOnSession.execute(this::warnTimeRunningOut));
+        }
+        limitTimer = wheel.schedule(TimeUnit.MILLISECONDS.toNanos(remaining),
+            () -> runOnSession.execute(this::timeUp));
+        if (pausedAt >= 0) {
+            pauseTimers();
+        }
+    }
+
+    public void disarmTimers() {
+        if (warningTimer != null) {
+            warningTimer.cancel();
+            warningTimer = null;
+        }
+        if (limitTimer != null) {
+            limitTimer.cancel();
+            limitTimer = null;
+        }
+    }
+
+    // Stops the session's clock, and its timers with it, until the next input or resumeClock()
+    public void pauseClock() {
+        if (pausedAt < 0) {
+            pausedAt = clock.millis();
+            pauseTimers();
+        }
+    }
+
+    public void resumeClock() {
+        if (pausedAt >= 0) {
+            startTime += clock.millis() - pausedAt;
+            pausedAt = -1;
+            if (warningTimer != null) {
+                warningTimer.resume();
+            }
+            if (limitTimer != null) {
+                limitTimer.resume();
             }
         }
+    }
+
+    public boolean isClockPaused() {
+        return pausedAt >= 0;
+    }
 
+    private void pauseTimers() {
+        if (warningTimer != null) {
+            warningTimer.pause();
+        }
+        if (limitTimer != null) {
+            limitTimer.pause();
+        }
+    }
+
+    // Called by the timer, or by CommandLog.replay when it reaches the recorded firing
+    void warnTimeRunningOut() {
+        if (!isActive()) {
+            return;
+        }
+        now = clock.millis();
+        if (commandLog != null) {
+            commandLog.recordTimer(now - startTime, CommandLog.WARNING);
+        }
+        out.println("\nOnly one minute left!");
+        resume();
+    }
+
+    void timeUp() {
+        if (!isActive()) {
+            return;
+        }
+        now = clock.millis();
+        if (commandLog != null) {
+            commandLog.recordTimer(now - startTime, CommandLog.TIME_UP);
+        }
+        timeExpired = true;
+        out.println("\nTime's up! Game Over!");
+        handleTimeout();
+        state = State.FINISHED;
+        disarmTimers();
+        events.drain();
+        out.flush();
+    }
+
+    // One input, line[start, end); only commands are read in place
+    private void stepInput(String line, int start, int end) {
+        State before = state;
+        switch (state) {
+            case AWAITING_NAME:
+                playerName = line;
+                out.println("You have 10 minutes to collect items and solve all puzzles!");
+                out.println("Type 'help' for a list of commands.");
+                state = State.AWAITING_COMMAND;
+                promptForCommand();
+                break;
+            case AWAITING_COMMAND:
+                turns++;
+                processCommand(line, start, end);
+                break;
+            case AWAITING_ANSWER:
+                answerPuzzle(line.substring(start, end));
+                break;
+            case AWAITING_SEARCH_MIN:
+                readSearchMin(line.substring(start, end));
+                break;
+            case AWAITING_SEARCH_MAX:
+                readSearchMax(line.substring(start, end));
+                break;
+            case IN_COMBAT:
+                long started = System.nanoTime();
+                combatRound(line.substring(start, end));
+                METRICS.combatRounds.record(System.nanoTime() - started);
+                break;
+            default:
+                break;
+        }
+        // A turn ends once the command and any prompts it opened are done
+        if (before != State.AWAITING_NAME && state == State.AWAITING_COMMAND) {
+            endTurn();
+        }
+    }
+
+    private static boolean isBlank(String line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(line.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts logging every input line and timer firing with its time,
+     * so that CommandLog.replay can rerun the session. Only possible
+     * before the game starts.
+     */
+    public CommandLog startRecording() {
+        if (state != State.NOT_STARTED) {
+            throw new IllegalStateException("Recording has to start before the game does");
+        }
+        commandLog = new CommandLog(seed);
+        return commandLog;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * The session's event stream. Subscribe before the game starts to
+     * see every event.
+     */
+    public EventBus getEvents() {
+        return events;
+    }
+
+    private void publish(GameEvent.Type type, int value, String subject) {
+        events.publish(type, currentRoomId, value, subject, now - startTime);
+    }
+
+    public boolean isActive() {
+        return state != State.FINISHED && state != State.NOT_STARTED;
+    }
+
+    public SessionResult getResult() {
+        return new SessionResult(won, died, timeExpired, score, turns, completedPuzzles.size());
+    }
+
+    private void endTurn() {
+        if (checkWinCondition()) {
+            handleWin();
+            state = State.FINISHED;
+            return;
+        }
+        promptForCommand();
+    }
+
+    private void promptForCommand() {
+        checkTimeAndDisplay();
         if (timeExpired) {
             handleTimeout();
+            state = State.FINISHED;
+            return;
         }
+        out.println("\n" + currentRoom().getDescription());
+        out.print("> ");
     }
 
     private void checkTimeAndDisplay() {
-        long currentTime = System.currentTimeMillis();
-        long elapsedTime = currentTime - startTime;
+        long elapsedTime = now - startTime;
         
         if (elapsedTime >= TIME_LIMIT) {
             timeExpired = true;
-            System.out.println("\nTime's up! Game Over!");
+            out.println("\nTime's up! Game Over!");
             return;
         }
 
         long remainingTime = (TIME_LIMIT - elapsedTime) / 1000;
-        System.out.println("\nTime remaining: " + remainingTime/60 + " minutes " + remainingTime%60 + " seconds");
+        out.println("\nTime remaining: " + remainingTime/60 + " minutes " + remainingTime%60 + " seconds");
     }
 
-    private void processCommand(String command, Scanner scanner) {
-        switch (command) {
-            case "help": showHelp(); break;
-            case "look": look(); break;
-            case "inventory": showInventory(); break;
-            case "back": goBack(); break;
-            case "solve": solvePuzzle(scanner); break;
-            case "status": showStatus(); break;
-            case "scores": showHighScores(); break;
-            case "quit": System.exit(0); break;
-            case "forward": goForward(); break;
-            case "hint": showHint(); break;
-            case "search": handleSearchCommand(scanner); break;
-            default: handleDefaultCommands(command);
+    // Runs the command in line[start, end) through the registry
+    void processCommand(String line, int start, int end) {
+        command.reset(line, start, end);
+        CommandRegistry.Command found = COMMANDS.lookup(line, command.verbStart(), command.verbEnd());
+        if (found == null || !found.accepts(command.hasArgument())) {
+            out.println("I don't understand that command.");
+            METRICS.commandUnknown();
+            return;
         }
+        long started = System.nanoTime();
+        found.action.execute(this, command);
+        METRICS.commandExecuted(found, System.nanoTime() - started);
+    }
+
+    private void quit() {
+        state = State.FINISHED;
+        publish(GameEvent.Type.QUIT, score, null);
     }
 
     private void handleWin() {
-        long completionTime = (System.currentTimeMillis() - startTime) / 1000;
-        System.out.println("\nCongratulations! You've won the game!");
-        System.out.println("Time taken: " + completionTime/60 + " minutes " + completionTime%60 + " seconds");
-        System.out.println("Final Score: " + score);
+        long completionTime = (now - startTime) / 1000;
+        won = true;
+        out.println("\nCongratulations! You've won the game!");
+        out.println("Time taken: " + completionTime/60 + " minutes " + completionTime%60 + " seconds");
+        out.println("Final Score: " + score);
         
         int timeBonus = calculateTimeBonus(completionTime);
-        System.out.println("Time Bonus: " + timeBonus);
+        out.println("Time Bonus: " + timeBonus);
         score += timeBonus;
-        System.out.println("Total Score with Time Bonus: " + score);
+        out.println("Total Score with Time Bonus: " + score);
+        publish(GameEvent.Type.GAME_WON, score, playerName);
         
         updateHighScores(playerName, score, completionTime);
     }
 
     private void handleTimeout() {
-        System.out.println("Game Over! You ran out of time.");
+        out.println("Game Over! You ran out of time.");
+        publish(GameEvent.Type.TIMED_OUT, score, playerName);
         showFinalStatus();
     }
 
     private boolean checkWinCondition() {
-        if (completedPuzzles.size() >= TOTAL_PUZZLES) {
-            for (List<Item> requiredItems : requiredItemsForPuzzle.values()) {
-                for (Item item : requiredItems) {
-                    if (!inventory.containsKey(item.getName())) {
-                        return false;
-                    }
-                }
-            }
-            return true;
-        }
-        return false;
+        return completedPuzzles.size() >= TOTAL_PUZZLES && requirements.hasAllRequiredItems();
     }
 
     private void showHelp() {
-        System.out.println("Available commands:");
-        System.out.println("  go <direction> - Move in a direction (north, south, east, west)");
-        System.out.println("  look          - Look around the current room");
-        System.out.println("  inventory     - Show your inventory");
-        System.out.println("  take <item>   - Take an item from the room");
-        System.out.println("  drop <item>   - Drop an item from your inventory");
-        System.out.println("  solve         - Try to solve the current puzzle");
-        System.out.println("  status        - Show game progress");
-        System.out.println("  back          - Go back to the previous room");
-        System.out.println("  scores        - Show high scores");
-        System.out.println("  help          - Show this help message");
-        System.out.println("  quit          - Exit the game");
-        System.out.println("  forward       - Move forward in your path");
-        System.out.println("  hint          - Show hint for current puzzle");
-        System.out.println("  search        - Search for items in a value range");
+        out.write(HELP_TEXT);
     }
 
     private void look() {
-        System.out.println(currentRoom.getFullDescription());
+        out.write(currentRoom().getEncodedDescription());
+        out.println();
     }
 
     private void move(String direction) {
-        Room nextRoom = currentRoom.getExit(direction);
+        Room nextRoom = currentRoom().getExit(direction);
         if (nextRoom != null) {
-            moveHistory.addMove(currentRoom);
-            currentRoom = nextRoom;
+            currentRoomId = nextRoom.getId();
+            moveHistory.addMove(currentRoomId);
+            publish(GameEvent.Type.MOVED, 0, null);
             
             enemySpawner.updateProgress(completedPuzzles.size());
-            if (Math.random() < 0.3) {
-                Enemy enemy = enemySpawner.getNextEnemy();
+            if (random.nextDouble() < 0.3) {
+                Enemy enemy = enemySpawner.getNextEnemy(random);
                 handleCombat(enemy);
             }
         } else {
-            System.out.println("You can't go that way!");
+            out.println("You can't go that way!");
+        }
+    }
+
+    // Looked up on every use: a paged store may have swapped the room out
+    // since the last command, so no Room is held across turns
+    private Room currentRoom() {
+        return world.getRoom(currentRoomId);
+    }
+
+    private void goBack(int steps) {
+        if (steps <= 0) {
+            return;
+        }
+        int previousRoomId = moveHistory.goBack(steps);
+        if (previousRoomId >= 0) {
+            currentRoomId = previousRoomId;
+            out.println("You went back to " + currentRoom().getName());
+        } else {
+            out.println("You can't go back any further!");
         }
     }
 
-    private void goBack() {
-        Room previousRoom = moveHistory.goBack();
-        if (previousRoom != null) {
-            currentRoom = previousRoom;
-            System.out.println("You went back to " + currentRoom.getName());
+    private void goForward(int steps) {
+        if (steps <= 0) {
+            return;
+        }
+        int nextRoomId = moveHistory.goForward(steps);
+        if (nextRoomId >= 0) {
+            currentRoomId = nextRoomId;
+            out.println("You went forward to " + currentRoom().getName());
         } else {
-            System.out.println("You can't go back any further!");
+            out.println("You can't go forward any further!");
         }
     }
 
-    private void goForward() {
-        Room nextRoom = moveHistory.goForward();
-        if (nextRoom != null) {
-            currentRoom = nextRoom;
-            System.out.println("You went forward to " + currentRoom.getName());
+    private void returnTo(String roomName) {
+        int roomId = world.findRoom(roomName);
+        if (roomId >= 0 && moveHistory.returnTo(roomId)) {
+            currentRoomId = roomId;
+            out.println("You retraced your steps to " + currentRoom().getName());
         } else {
-            System.out.println("You can't go forward any further!");
+            out.println("You haven't been to " + roomName + " recently.");
         }
     }
 
-    private void handleDefaultCommands(String command) {
-        if (command.equals("forward")) {
-            goForward();
-        } else if (command.startsWith("go ")) {
-            move(command.substring(3));
-        } else if (command.startsWith("take ")) {
-            takeItem(command.substring(5));
-        } else if (command.startsWith("drop ")) {
-            dropItem(command.substring(5));
+    // One step when no count is given
+    private int parseSteps(CommandTokenizer command) {
+        if (!command.hasArgument()) {
+            return 1;
+        }
+        int steps = command.argumentAsInt();
+        if (steps < 0) {
+            out.println("Invalid number.");
+        }
+        return steps;
+    }
+
+    private void go(CommandTokenizer command) {
+        if (command.skipWord("to")) {
+            goTowards(command.argument());
+        } else {
+            move(command.argument());
+        }
+    }
+
+    private void goTowards(String roomName) {
+        RouteService.Route route = routes.routeToRoom(currentRoomId, roomName);
+        if (route == null) {
+            out.println("You don't know the way to " + roomName + ".");
+        } else if (route.length() == 0) {
+            out.println("You're already there.");
+        } else {
+            out.println("You head " + route.firstStep().getLabel() + " towards "
+                + world.getRoom(route.getTarget()).getName() + ".");
+            move(route.firstStep().getLabel());
+        }
+    }
+
+    private void showRoute(String roomName) {
+        RouteService.Route route = routes.routeToRoom(currentRoomId, roomName);
+        if (route == null) {
+            out.println("You don't know the way to " + roomName + ".");
         } else {
-            System.out.println("I don't understand that command.");
+            printRoute(route);
         }
     }
 
+    private void findItem(String itemName) {
+        RouteService.Route route = routes.routeToItem(currentRoomId, itemName);
+        if (route == null) {
+            out.println("You haven't seen a " + itemName + " anywhere.");
+        } else {
+            out.print("The nearest " + itemName + " is in ");
+            printRoute(route);
+        }
+    }
+
+    private void printRoute(RouteService.Route route) {
+        String target = world.getRoom(route.getTarget()).getName();
+        if (route.length() == 0) {
+            out.println(target + ", right here.");
+            return;
+        }
+        StringBuilder steps = new StringBuilder();
+        int listed = Math.min(route.length(), MAX_LISTED_STEPS);
+        for (int i = 0; i < listed; i++) {
+            if (i > 0) {
+                steps.append(", ");
+            }
+            steps.append(route.getStep(i).getLabel());
+        }
+        if (listed < route.length()) {
+            steps.append(", ...");
+        }
+        out.println(target + ", " + route.length() + (route.length() == 1 ? " move" : " moves")
+            + " away: " + steps);
+    }
+
     private void takeItem(String itemName) {
-        Item item = currentRoom.removeItem(itemName);
+        Item item = currentRoom().removeItem(itemName);
         if (item != null) {
-            inventory.put(itemName, item);
+            addToInventory(item);
             score += item.getValue();
-            System.out.println("Taken: " + itemName);
+            out.println("Taken: " + itemName);
+            publish(GameEvent.Type.ITEM_TAKEN, item.getValue(), item.getName());
         } else {
-            System.out.println("There's no " + itemName + " here!");
+            out.println("There's no " + itemName + " here!");
         }
     }
 
     private void dropItem(String itemName) {
-        Item item = inventory.remove(itemName);
+        Item item = removeFromInventory(itemName);
         if (item != null) {
-            currentRoom.addItem(item);
-            System.out.println("Dropped: " + itemName);
+            currentRoom().addItem(item);
+            out.println("Dropped: " + itemName);
+            publish(GameEvent.Type.ITEM_DROPPED, item.getValue(), item.getName());
         } else {
-            System.out.println("You don't have " + itemName + "!");
+            out.println("You don't have " + itemName + "!");
+        }
+    }
+
+    // All inventory changes go through these two so the item index and requirements stay current
+    private void addToInventory(Item item) {
+        inventory.add(item);
+        int held = inventory.count(item);
+        if (held == 1) {
+            itemIndex.add(item, ItemIndex.INVENTORY);
+        }
+        requirements.itemAdded(item, held);
+    }
+
+    private Item removeFromInventory(String itemName) {
+        Item item = inventory.find(itemName);
+        if (item != null) {
+            inventory.remove(item);
+            int held = inventory.count(item);
+            if (held == 0) {
+                itemIndex.remove(item, ItemIndex.INVENTORY);
+            }
+            requirements.itemRemoved(item, held);
         }
+        return item;
     }
 
     private void showInventory() {
         if (inventory.isEmpty()) {
-            System.out.println("Your inventory is empty.");
+            out.println("Your inventory is empty.");
         } else {
-            System.out.println("Inventory:");
-            for (Item item : inventory.values()) {
-                System.out.println("  " + item.getName() + " - " + item.getDescription());
+            out.println("Inventory:");
+            for (Item item : inventory.getStacks()) {
+                out.println("  " + stackName(item) + " - " + item.getDescription());
             }
         }
     }
 
-    private void solvePuzzle(Scanner scanner) {
+    private String stackName(Item item) {
+        int count = inventory.count(item);
+        return count > 1 ? item.getName() + " x" + count : item.getName();
+    }
+
+    private void solvePuzzle() {
         if (puzzles.isEmpty()) {
-            System.out.println("No more puzzles to solve!");
+            out.println("No more puzzles to solve!");
             return;
         }
 
         Puzzle currentPuzzle = puzzles.peek();
-        List<Item> requiredItems = requiredItemsForPuzzle.get(currentPuzzle.getType());
-        
-        if (!checkRequiredItems(requiredItems)) {
+        if (!requirements.isReady(currentPuzzle)) {
+            explainShortfall(currentPuzzle);
             return;
         }
+        PuzzleSolver.Solution solution = puzzleSolver.solve(currentPuzzle, inventory);
+
+        out.println("\nCurrent Puzzle:");
+        out.println(currentPuzzle.getQuestion());
+        out.println("(Hint: Your " + itemNames(solution.getItems()) + " will do)");
+        out.print("Your answer: ");
+        pendingPuzzle = currentPuzzle;
+        state = State.AWAITING_ANSWER;
+    }
 
-        System.out.println("\nCurrent Puzzle:");
-        System.out.println(currentPuzzle.getQuestion());
-        System.out.println("(Hint: You have the required items in your inventory)");
-        System.out.print("Your answer: ");
-        String answer = scanner.nextLine().toLowerCase();
+    private void answerPuzzle(String answer) {
+        Puzzle currentPuzzle = pendingPuzzle;
+        pendingPuzzle = null;
+        state = State.AWAITING_COMMAND;
 
-        if (answer.equals(currentPuzzle.getAnswer().toLowerCase())) {
+        if (answer.toLowerCase().equals(currentPuzzle.getAnswer().toLowerCase())) {
             handleCorrectPuzzleSolution(currentPuzzle);
         } else {
-            System.out.println("Incorrect. Try again later!");
+            out.println("Incorrect. Try again later!");
+            publish(GameEvent.Type.PUZZLE_FAILED, 0, currentPuzzle.getType());
         }
     }
 
-    private boolean checkRequiredItems(List<Item> requiredItems) {
-        List<String> missingItems = new ArrayList<>();
-        int totalValue = 0;
-        
-        // Check if we have the specific items
-        for (Item requiredItem : requiredItems) {
-            if (!inventory.containsKey(requiredItem.getName())) {
-                missingItems.add(requiredItem.getName());
-            } else {
-                totalValue += inventory.get(requiredItem.getName()).getValue();
-            }
+    // Why no set of held items meets the puzzle's requirement
+    private void explainShortfall(Puzzle puzzle) {
+        int totalValue = requirements.getTotalValue();
+        if (totalValue < puzzle.getRequiredValue()) {
+            out.println("\nYour items aren't powerful enough!");
+            out.println("Current combined value: " + totalValue);
+            out.println("Required value: " + puzzle.getRequiredValue());
         }
-
-        // Check if items meet value requirement
-        int requiredValue = 0;
-        Puzzle currentPuzzle = puzzles.peek();
-        switch(currentPuzzle.getType()) {
-            case "LIGHT_RITUAL": requiredValue = 25; break;
-            case "ANCIENT_TEXT": requiredValue = 35; break;
-            case "PORTAL": requiredValue = 60; break;
+        if (!requirements.hasKeyItem(puzzle)) {
+            out.println("\nYou don't have the required items!");
+            out.println("You need one of: " + String.join(", ", new TreeSet<>(puzzle.getKeyItems())));
         }
+    }
 
-        if (totalValue < requiredValue) {
-            System.out.println("\nYour items aren't powerful enough!");
-            System.out.println("Current combined value: " + totalValue);
-            System.out.println("Required value: " + requiredValue);
-            return false;
+    // The cheapest set of items that would let the player attempt the current puzzle
+    private void showNeeds() {
+        if (puzzles.isEmpty()) {
+            out.println("No more puzzles to solve!");
+            return;
+        }
+        Puzzle puzzle = puzzles.peek();
+        out.println("\n" + puzzle.getType() + " needs items worth " + puzzle.getRequiredValue()
+            + "+ points, including one of: " + String.join(", ", new TreeSet<>(puzzle.getKeyItems())) + ".");
+        if (requirements.isReady(puzzle)) {
+            PuzzleSolver.Solution solution = puzzleSolver.solve(puzzle, inventory);
+            out.println("Your cheapest set: " + itemNames(solution.getItems()) + " ("
+                + solution.getTotalValue() + " points).");
+            return;
         }
+        explainShortfall(puzzle);
+        showNearestRequiredItem(puzzle);
+    }
 
-        // Check for alternative solutions
-        if (checkAlternativeSolution(currentPuzzle.getType(), 
-                                   new ArrayList<>(inventory.values()))) {
-            return true;
+    private static String itemNames(List<Item> items) {
+        StringBuilder names = new StringBuilder();
+        for (int i = 0; i < items.size(); i++) {
+            if (i > 0) {
+                names.append(i == items.size() - 1 ? " and " : ", ");
+            }
+            names.append(items.get(i).getName());
         }
+        return names.toString();
+    }
 
-        if (!missingItems.isEmpty()) {
-            System.out.println("\nYou don't have the required items!");
-            System.out.println("Missing items: " + String.join(", ", missingItems));
-            return false;
+    PuzzleSolver.Solution findSolution(String puzzleType, Collection<Item> items) {
+        for (Puzzle puzzle : puzzles) {
+            if (puzzle.getType().equals(puzzleType)) {
+                return puzzleSolver.solve(puzzle, items);
+            }
         }
-        return true;
+        return null;
     }
 
     private void handleCorrectPuzzleSolution(Puzzle puzzle) {
@@ -439,140 +972,184 @@ public class Game {
         completedPuzzles.add(puzzle.getType());
         int puzzleScore = 50 * puzzle.getDifficulty();
         score += puzzleScore;
-        System.out.println("Correct! You earned " + puzzleScore + " points!");
+        out.println("Correct! You earned " + puzzleScore + " points!");
+        publish(GameEvent.Type.PUZZLE_SOLVED, puzzleScore, puzzle.getType());
     }
 
     private void handleCombat(Enemy enemy) {
-        Scanner scanner = new Scanner(System.in);
-        System.out.println("\nYou encounter a " + enemy.getName() + "!");
-        
-        while (enemy.isAlive() && player.isAlive()) {
-            displayCombatStatus(enemy);
-            int choice = getCombatChoice(scanner);
-            processCombatChoice(choice, enemy);
-            
-            if (!player.isAlive()) {
-                System.out.println("You have been defeated! Game Over.");
-                System.exit(0);
-            }
+        out.println("\nYou encounter a " + enemy.getName() + "!");
+        combatEnemy = enemy;
+        state = State.IN_COMBAT;
+        publish(GameEvent.Type.COMBAT_STARTED, enemy.getHealth(), enemy.getName());
+        displayCombatStatus(enemy);
+    }
+
+    // One line of combat input: a round is fought only for a valid choice
+    private void combatRound(String line) {
+        int choice = parseCombatChoice(line);
+        if (choice < 0) {
+            out.println("Please enter a number (1-3):");
+            return;
+        }
+        Enemy enemy = combatEnemy;
+        boolean escaped = processCombatChoice(choice, enemy);
+
+        if (!player.isAlive()) {
+            out.println("You have been defeated! Game Over.");
+            died = true;
+            combatEnemy = null;
+            state = State.FINISHED;
+            publish(GameEvent.Type.PLAYER_DIED, score, enemy.getName());
+            enemySpawner.release(enemy);
+            return;
         }
-        
         if (!enemy.isAlive()) {
             handleEnemyDefeat(enemy);
         }
+        if (escaped || !enemy.isAlive()) {
+            combatEnemy = null;
+            state = State.AWAITING_COMMAND;
+            enemySpawner.release(enemy);
+        } else {
+            displayCombatStatus(enemy);
+        }
     }
 
     private void displayCombatStatus(Enemy enemy) {
-        System.out.println("\nEnemy Health: " + enemy.getHealth());
-        System.out.println("Your Health: " + player.getHealth());
-        System.out.println("\nWhat would you like to do?");
-        System.out.println("1. Attack");
-        System.out.println("2. Use Health Potion");
-        System.out.println("3. Try to Run");
-    }
-
-    private int getCombatChoice(Scanner scanner) {
-        while (true) {
-            try {
-                String input = scanner.nextLine().trim();
-                if (input.matches("\\d+")) {
-                    int choice = Integer.parseInt(input);
-                    if (choice >= 1 && choice <= 3) {
-                        return choice;
-                    }
-                }
-                System.out.println("Please enter a number (1-3):");
-            } catch (Exception e) {
-                System.out.println("Invalid input. Please enter a number (1-3):");
+        out.println("\nEnemy Health: " + enemy.getHealth());
+        out.println("Your Health: " + player.getHealth());
+        out.println("\nWhat would you like to do?");
+        out.println("1. Attack");
+        out.println("2. Use Health Potion");
+        out.println("3. Try to Run");
+    }
+
+    private int parseCombatChoice(String line) {
+        String input = line.trim();
+        if (input.length() == 1) {
+            char c = input.charAt(0);
+            if (c >= '1' && c <= '3') {
+                return c - '0';
             }
         }
+        return -1;
     }
 
-    private void processCombatChoice(int choice, Enemy enemy) {
+    // Returns true when the player got away
+    private boolean processCombatChoice(int choice, Enemy enemy) {
         switch (choice) {
             case 1: handleAttack(enemy); break;
             case 2: handlePotion(); break;
-            case 3: handleEscape(enemy); break;
+            case 3: return handleEscape(enemy);
         }
+        return false;
     }
 
     private void handleAttack(Enemy enemy) {
-        int playerDamage = player.attack();
+        int playerDamage = player.attack(random);
         enemy.takeDamage(playerDamage);
-        System.out.println("You deal " + playerDamage + " damage!");
+        out.println("You deal " + playerDamage + " damage!");
+        publish(GameEvent.Type.PLAYER_HIT, playerDamage, enemy.getName());
         
         if (enemy.isAlive()) {
-            int enemyDamage = enemy.attack();
+            int enemyDamage = enemy.attack(random);
             player.takeDamage(enemyDamage);
-            System.out.println("Enemy deals " + enemyDamage + " damage!");
+            out.println("Enemy deals " + enemyDamage + " damage!");
+            publish(GameEvent.Type.ENEMY_HIT, enemyDamage, enemy.getName());
         }
     }
 
     private void handlePotion() {
-        if (inventory.containsKey("potion")) {
-            player.heal(30);
-            inventory.remove("potion");
-            System.out.println("You used a health potion! Health restored to " + player.getHealth());
+        if (inventory.contains(POTION)) {
+            player.drinkPotion();
+            removeFromInventory("potion");
+            out.println("You used a health potion! Health restored to " + player.getHealth());
         } else {
-            System.out.println("You don't have any health potions!");
+            out.println("You don't have any health potions!");
         }
     }
 
-    private void handleEscape(Enemy enemy) {
-        if (Math.random() < 0.5) {
-            System.out.println("You successfully ran away!");
+    private boolean handleEscape(Enemy enemy) {
+        if (CombatRules.escapes(random)) {
+            out.println("You successfully ran away!");
+            publish(GameEvent.Type.ESCAPED, 0, enemy.getName());
+            return true;
         } else {
-            System.out.println("Couldn't escape!");
-            int damage = enemy.attack();
+            out.println("Couldn't escape!");
+            int damage = enemy.attack(random);
             player.takeDamage(damage);
-            System.out.println("Enemy deals " + damage + " damage!");
+            out.println("Enemy deals " + damage + " damage!");
+            publish(GameEvent.Type.ENEMY_HIT, damage, enemy.getName());
+            return false;
+        }
+    }
+
+    // What the toughest wandering enemy would do to the player as they stand
+    private void showDanger() {
+        enemySpawner.updateProgress(completedPuzzles.size());
+        Enemy enemy = enemySpawner.getHardestEnemy(random);
+        int potions = inventory.count(POTION);
+        CombatEstimate estimate = ESTIMATOR.estimateHere(player, potions, enemy, DANGER_FIGHTS, random.nextLong());
+        enemySpawner.release(enemy);
+        double death = estimate.getDeathProbability();
+        String danger = death < 0.05 ? "Low" : death < 0.25 ? "Moderate" : death < 0.6 ? "High" : "Deadly";
+        out.println("Danger: " + danger);
+        out.printf("If a %s attacks, you win %.0f%% of fights in about %.1f rounds,%n",
+            enemy.getName(), 100 * estimate.getWinProbability(), estimate.getExpectedRounds());
+        out.printf("losing about %.0f health when you survive.%n", Math.max(0, estimate.getExpectedHealthLost()));
+        if (potions > 0) {
+            out.printf("You'd drink a potion in %.0f%% of them, about %.1f potions on average.%n",
+                100 * estimate.getPotionProbability(), estimate.getExpectedPotionsUsed());
         }
     }
 
     private void handleEnemyDefeat(Enemy enemy) {
-        System.out.println("You defeated the " + enemy.getName() + "!");
+        out.println("You defeated the " + enemy.getName() + "!");
         Item loot = enemy.getLoot();
         if (loot != null) {
-            inventory.put(loot.getName(), loot);
-            System.out.println("You found: " + loot.getName() + " - " + loot.getDescription());
+            addToInventory(loot);
+            out.println("You found: " + loot.getName() + " - " + loot.getDescription());
             score += loot.getValue();
         }
+        publish(GameEvent.Type.ENEMY_DEFEATED, loot != null ? loot.getValue() : 0, enemy.getName());
     }
 
     private void showStatus() {
-        System.out.println("\nGame Status:");
-        System.out.println("Items Collected: " + inventory.size() + "/" + TOTAL_ITEMS);
-        System.out.println("Puzzles Solved: " + completedPuzzles.size() + "/" + TOTAL_PUZZLES);
-        System.out.println("Current Score: " + score);
+        out.println("\nGame Status:");
+        out.println("Items Collected: " + inventory.getStackCount() + "/" + TOTAL_ITEMS);
+        out.println("Puzzles Solved: " + completedPuzzles.size() + "/" + TOTAL_PUZZLES);
+        out.println("Current Score: " + score);
         
         // Add inventory display with values
         if (!inventory.isEmpty()) {
-            System.out.println("\nInventory Items:");
-            int totalValue = 0;
-            for (Item item : inventory.values()) {
-                System.out.printf("  %s (%d points) - %s%n", 
-                    item.getName(), 
+            out.println("\nInventory Items:");
+            for (Item item : inventory.getStacks()) {
+                out.printf("  %s (%d points) - %s%n", 
+                    stackName(item), 
                     item.getValue(), 
                     item.getDescription());
-                totalValue += item.getValue();
             }
-            System.out.println("Total Item Value: " + totalValue + " points");
+            out.println("Total Item Value: " + inventory.getTotalValue() + " points");
+            out.printf("Light %d, Text %d, Portal %d, Support %d%n",
+                inventory.count(Item.Category.LIGHT), inventory.count(Item.Category.TEXT),
+                inventory.count(Item.Category.PORTAL), inventory.count(Item.Category.SUPPORT));
+            out.println("Most valuable: " + inventory.getMostValuable().getName());
         }
         
-        long remainingTime = (TIME_LIMIT - (System.currentTimeMillis() - startTime)) / 1000;
-        System.out.println("\nTime Remaining: " + remainingTime/60 + " minutes " + remainingTime%60 + " seconds");
+        long remainingTime = (TIME_LIMIT - (now - startTime)) / 1000;
+        out.println("\nTime Remaining: " + remainingTime/60 + " minutes " + remainingTime%60 + " seconds");
     }
 
     private void showFinalStatus() {
-        System.out.println("\nFinal Status:");
-        System.out.println("Items Collected: " + inventory.size() + "/" + TOTAL_ITEMS);
-        System.out.println("Puzzles Solved: " + completedPuzzles.size() + "/" + TOTAL_PUZZLES);
-        System.out.println("Final Score: " + score);
+        out.println("\nFinal Status:");
+        out.println("Items Collected: " + inventory.getStackCount() + "/" + TOTAL_ITEMS);
+        out.println("Puzzles Solved: " + completedPuzzles.size() + "/" + TOTAL_PUZZLES);
+        out.println("Final Score: " + score);
         
         if (!puzzles.isEmpty()) {
-            System.out.println("\nUnsolved Puzzles:");
+            out.println("\nUnsolved Puzzles:");
             for (Puzzle puzzle : puzzles) {
-                System.out.println("- " + puzzle.getType());
+                out.println("- " + puzzle.getType());
             }
         }
     }
@@ -586,199 +1163,291 @@ public class Game {
     }
 
     private void updateHighScores(String playerName, int finalScore, long timeTaken) {
-        highScores.add(new Score(playerName, finalScore, timeTaken));
-        
-        if (highScores.size() > 1) {
-            mergeSort(highScores, 0, highScores.size() - 1);
-        }
-        
-        if (highScores.size() > MAX_HIGH_SCORES) {
-            highScores = highScores.subList(0, MAX_HIGH_SCORES);
-        }
-        
+        scoreManager.addScore(new Score(playerName, finalScore, timeTaken));
         showHighScores();
     }
 
-    private void mergeSort(List<Score> scores, int left, int right) {
-        if (left < right) {
-            int mid = (left + right) / 2;
-            mergeSort(scores, left, mid);
-            mergeSort(scores, mid + 1, right);
-            merge(scores, left, mid, right);
-        }
-    }
-
-    private void merge(List<Score> scores, int left, int mid, int right) {
-        List<Score> leftList = new ArrayList<>(scores.subList(left, mid + 1));
-        List<Score> rightList = new ArrayList<>(scores.subList(mid + 1, right + 1));
-        
-        int i = 0, j = 0, k = left;
-        
-        while (i < leftList.size() && j < rightList.size()) {
-            if (leftList.get(i).compareTo(rightList.get(j)) <= 0) {
-                scores.set(k++, leftList.get(i++));
-            } else {
-                scores.set(k++, rightList.get(j++));
-            }
-        }
-        
-        while (i < leftList.size()) {
-            scores.set(k++, leftList.get(i++));
-        }
-        
-        while (j < rightList.size()) {
-            scores.set(k++, rightList.get(j++));
-        }
-    }
-
     private void showHighScores() {
-        System.out.println("\n=== HIGH SCORES ===");
-        System.out.println("Name            Score   Time");
-        System.out.println("--------------------------------");
+        out.println("\n=== HIGH SCORES ===");
+        out.println("Name            Score   Time");
+        out.println("--------------------------------");
+        List<Score> highScores = scoreManager.getHighScores();
         for (int i = 0; i < highScores.size(); i++) {
-            System.out.printf("%d. %s\n", i + 1, highScores.get(i));
-        }
-    }
-
-    private void processEvents() {
-        while (!eventQueue.isEmpty()) {
-            GameEvent event = eventQueue.poll();
-            System.out.println("\n" + event.getMessage());
-            
-            if (event.getType().equals("RANDOM_ITEM")) {
-                if (Math.random() < 0.5) {
-                    Item randomItem = new Item("gem", "A mysterious gem", 20);
-                    currentRoom.addItem(randomItem);
-                    System.out.println("A mysterious gem appeared in the room!");
-                }
-            }
+            out.printf("%d. %s\n", i + 1, highScores.get(i));
         }
     }
 
     private void showHint() {
         if (!puzzles.isEmpty()) {
             Puzzle currentPuzzle = puzzles.peek();
-            System.out.println("\nHint for current puzzle:");
+            out.println("\nHint for current puzzle:");
             switch(currentPuzzle.getType()) {
                 case "LIGHT_RITUAL":
-                    System.out.println("The darkness might be dispelled by combining a light source with a magical focus...");
+                    out.println("The darkness might be dispelled by combining a light source with a magical focus...");
                     break;
                 case "ANCIENT_TEXT":
-                    System.out.println("Knowledge often comes from combining different sources of information...");
+                    out.println("Knowledge often comes from combining different sources of information...");
                     break;
                 case "PORTAL":
-                    System.out.println("Magical portals usually require both a focus and a channeling item...");
+                    out.println("Magical portals usually require both a focus and a channeling item...");
                     break;
             }
+            showNearestRequiredItem(currentPuzzle);
         }
     }
 
-    private List<Item> getAllItems() {
-        List<Item> allItems = new ArrayList<>();
-        // Collect items from all rooms and inventory
-        for (Room room : rooms.values()) {
-            allItems.addAll(room.getItems().values());
+    // Points at whichever missing required item is fewest moves away
+    private void showNearestRequiredItem(Puzzle puzzle) {
+        List<Item> requiredItems = requiredItemsForPuzzle.get(puzzle.getType());
+        if (requiredItems == null) {
+            return;
+        }
+        RouteService.Route nearest = null;
+        String nearestName = null;
+        for (Item item : requiredItems) {
+            if (inventory.contains(item)) {
+                continue;
+            }
+            RouteService.Route route = routes.routeToItem(currentRoomId, item.getName());
+            if (route != null && (nearest == null || route.length() < nearest.length())) {
+                nearest = route;
+                nearestName = item.getName();
+            }
+        }
+        if (nearest != null) {
+            out.print("You sense a " + nearestName + " in ");
+            printRoute(nearest);
         }
-        allItems.addAll(inventory.values());
-        
-        // Sort by value for binary search
-        allItems.sort(Comparator.comparingInt(Item::getValue));
-        return allItems;
     }
 
-    private List<Item> findItemsInValueRange(int minValue, int maxValue) {
-        List<Item> allItems = getAllItems();
+    List<Item> findItemsInValueRange(int minValue, int maxValue) {
         List<Item> result = new ArrayList<>();
-        
-        // Binary search for lower bound
-        int low = binarySearchLowerBound(allItems, minValue);
-        // Binary search for upper bound
-        int high = binarySearchUpperBound(allItems, maxValue);
-        
-        // Add all items in range
-        for (int i = low; i <= high && i < allItems.size(); i++) {
-            if (allItems.get(i).getValue() >= minValue && 
-                allItems.get(i).getValue() <= maxValue) {
-                result.add(allItems.get(i));
-            }
-        }
+        itemIndex.forEachInRange(minValue, maxValue, (item, owner) -> result.add(item));
         return result;
     }
 
-    private int binarySearchLowerBound(List<Item> items, int targetValue) {
-        int left = 0;
-        int right = items.size() - 1;
-        
-        while (left <= right) {
-            int mid = left + (right - left) / 2;
-            if (items.get(mid).getValue() < targetValue) {
-                left = mid + 1;
-            } else {
-                right = mid - 1;
-            }
+    ItemIndex getItemIndex() {
+        return itemIndex;
+    }
+
+    RoomStore getWorld() {
+        return world;
+    }
+
+    // The session half of a checkpoint; Checkpoint writes the header and rooms around it
+    void writeState(DataOutput out) throws IOException {
+        out.writeByte(state.ordinal());
+        out.writeBoolean(playerName != null);
+        if (playerName != null) {
+            out.writeUTF(playerName);
+        }
+        out.writeInt(score);
+        out.writeInt(turns);
+        out.writeBoolean(won);
+        out.writeBoolean(died);
+        out.writeBoolean(timeExpired);
+        out.writeLong((pausedAt >= 0 ? pausedAt : clock.millis()) - startTime);
+        out.writeInt(player.getHealth());
+        out.writeInt(currentRoomId);
+        out.writeInt(searchMinValue);
+        out.writeUTF(pendingPuzzle != null ? pendingPuzzle.getType() : "");
+        out.writeBoolean(combatEnemy != null);
+        if (combatEnemy != null) {
+            out.writeUTF(combatEnemy.getName());
+            out.writeInt(combatEnemy.getMaxHealth());
+            out.writeInt(combatEnemy.getHealth());
+            out.writeInt(combatEnemy.getAttackPower());
+            out.writeInt(combatEnemy.getDifficulty());
+            Checkpoint.writeItem(out, combatEnemy.getLoot());
+        }
+        out.writeByte(puzzles.size());
+        for (Puzzle puzzle : puzzles) {
+            out.writeUTF(puzzle.getType());
+        }
+        out.writeByte(completedPuzzles.size());
+        for (String puzzleType : completedPuzzles) {
+            out.writeUTF(puzzleType);
+        }
+        Checkpoint.writeItems(out, inventory);
+        moveHistory.writeTo(out);
+        // Since version 2
+        out.writeLong(seed);
+        out.writeLong(steps);
+        // Since version 4
+        int[] ties = inventory.tieOrder();
+        out.writeShort(ties.length);
+        for (int stack : ties) {
+            out.writeShort(stack);
         }
-        return left;
     }
 
-    private int binarySearchUpperBound(List<Item> items, int targetValue) {
-        int left = 0;
-        int right = items.size() - 1;
-        
-        while (left <= right) {
-            int mid = left + (right - left) / 2;
-            if (items.get(mid).getValue() <= targetValue) {
-                left = mid + 1;
-            } else {
-                right = mid - 1;
+    void readState(DataInput in, int version) throws IOException {
+        State[] states = State.values();
+        int ordinal = in.readUnsignedByte();
+        if (ordinal >= states.length) {
+            throw new IOException("Corrupt game state");
+        }
+        state = states[ordinal];
+        playerName = in.readBoolean() ? in.readUTF() : null;
+        score = in.readInt();
+        turns = in.readInt();
+        won = in.readBoolean();
+        died = in.readBoolean();
+        timeExpired = in.readBoolean();
+        now = clock.millis();
+        startTime = now - in.readLong();
+        player.setHealth(in.readInt());
+        currentRoomId = in.readInt();
+        if (currentRoomId < 0 || currentRoomId >= world.size()) {
+            throw new IOException("Checkpoint places the player outside the world");
+        }
+        searchMinValue = in.readInt();
+        String pendingType = in.readUTF();
+        if (combatEnemy != null) {
+            enemySpawner.release(combatEnemy);
+            combatEnemy = null;
+        }
+        if (in.readBoolean()) {
+            String name = in.readUTF();
+            int maxHealth = in.readInt();
+            int health = in.readInt();
+            int attackPower = in.readInt();
+            int difficulty = in.readInt();
+            combatEnemy = enemySpawner.restore(name, maxHealth, health, attackPower, difficulty,
+                Checkpoint.readItem(in, version));
+        }
+
+        Set<String> remaining = readNames(in);
+        puzzles.removeIf(puzzle -> !remaining.contains(puzzle.getType()));
+        pendingPuzzle = null;
+        for (Puzzle puzzle : puzzles) {
+            if (puzzle.getType().equals(pendingType)) {
+                pendingPuzzle = puzzle;
+            }
+        }
+        if (state == State.AWAITING_ANSWER && pendingPuzzle == null) {
+            throw new IOException("Checkpoint awaits an answer to an unknown puzzle");
+        }
+        if (state == State.IN_COMBAT && combatEnemy == null) {
+            throw new IOException("Checkpoint is in combat without an enemy");
+        }
+        completedPuzzles.clear();
+        completedPuzzles.addAll(readNames(in));
+        enemySpawner.updateProgress(completedPuzzles.size());
+
+        for (Item item : inventory.toArray(new Item[0])) {
+            removeFromInventory(item.getName());
+        }
+        int itemCount = in.readUnsignedShort();
+        for (int i = 0; i < itemCount; i++) {
+            addToInventory(Checkpoint.readItem(in, version));
+        }
+        moveHistory = MovementHistory.readFrom(in);
+        if (version >= 2) {
+            seed = in.readLong();
+            steps = in.readLong();
+        }
+        if (version >= 4) {
+            int tieCount = in.readUnsignedShort();
+            for (int i = 0; i < tieCount; i++) {
+                int stack = in.readUnsignedShort();
+                if (stack >= inventory.getStackCount()) {
+                    throw new IOException("Corrupt inventory order");
+                }
+                inventory.touch(stack);
             }
         }
-        return right;
     }
 
-    private void handleSearchCommand(Scanner scanner) {
-        System.out.println("Enter minimum value:");
-        int minValue = scanner.nextInt();
-        System.out.println("Enter maximum value:");
-        int maxValue = scanner.nextInt();
-        scanner.nextLine(); // consume newline
-        
-        List<Item> foundItems = findItemsInValueRange(minValue, maxValue);
+    private static Set<String> readNames(DataInput in) throws IOException {
+        int count = in.readUnsignedByte();
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < count; i++) {
+            names.add(in.readUTF());
+        }
+        return names;
+    }
+
+    RouteService getRouteService() {
+        return routes;
+    }
+
+    int getCurrentRoomId() {
+        return currentRoomId;
+    }
+
+    private void handleSearchCommand() {
+        out.println("Enter minimum value:");
+        state = State.AWAITING_SEARCH_MIN;
+    }
+
+    private void readSearchMin(String line) {
+        searchMinValue = parseValue(line);
+        if (searchMinValue < 0) {
+            state = State.AWAITING_COMMAND;
+            return;
+        }
+        out.println("Enter maximum value:");
+        state = State.AWAITING_SEARCH_MAX;
+    }
+
+    private void readSearchMax(String line) {
+        state = State.AWAITING_COMMAND;
+        int minValue = searchMinValue;
+        int maxValue = parseValue(line);
+        if (maxValue < 0) {
+            return;
+        }
         
-        if (foundItems.isEmpty()) {
-            System.out.println("No items found in that value range.");
-        } else {
-            System.out.println("Items found in value range " + minValue + "-" + maxValue + ":");
-            for (Item item : foundItems) {
-                System.out.printf("  %s (%d points) - %s%n", 
-                    item.getName(), item.getValue(), item.getDescription());
-            }
+        // One walk of the index; the heading goes out with the first match
+        searchMaxValue = maxValue;
+        searchFound = false;
+        itemIndex.forEachInRange(minValue, maxValue, searchPrinter);
+        if (!searchFound) {
+            out.println("No items found in that value range.");
         }
     }
 
-    private boolean checkAlternativeSolution(String puzzleType, List<Item> items) {
-        int totalValue = items.stream().mapToInt(Item::getValue).sum();
-        switch(puzzleType) {
-            case "LIGHT_RITUAL":
-                return totalValue >= 25 && 
-                       (items.stream().anyMatch(i -> i.getName().contains("torch") || 
-                                                   i.getName().contains("crystal") ||
-                                                   i.getName().contains("orb")));
-            case "ANCIENT_TEXT":
-                return totalValue >= 35 && 
-                       (items.stream().anyMatch(i -> i.getName().contains("book") || 
-                                                   i.getName().contains("scroll") ||
-                                                   i.getName().contains("relic")));
-            case "PORTAL":
-                return totalValue >= 60 && 
-                       (items.stream().anyMatch(i -> i.getName().contains("amulet") || 
-                                                   i.getName().contains("wand") ||
-                                                   i.getName().contains("crown")));
+    private void printSearchResult(Item item, int owner) {
+        if (!searchFound) {
+            searchFound = true;
+            out.println("Items found in value range " + searchMinValue + "-" + searchMaxValue + ":");
+        }
+        out.printf("  %s (%d points) - %s%n", item.getName(), item.getValue(), item.getDescription());
+    }
+
+    private int parseValue(String line) {
+        try {
+            return Integer.parseInt(line.trim());
+        } catch (NumberFormatException e) {
+            out.println("Invalid number.");
+            return -1;
         }
-        return false;
     }
 
-    public static void main(String[] args) {
-        Game game = new Game();
-        game.play();
+    // Sessions that don't bring their own board share the on-disk one,
+    // created the first time a session needs it
+    private static class SharedScores {
+        static final ScoreManager INSTANCE = new ScoreManager();
+    }
+
+    // java Game [seed width height [memoryBudgetMB]] plays a generated dungeon
+    // instead of the classic one, paging rooms to disk when a budget is given
+    public static void main(String[] args) throws java.io.IOException {
+        if (args.length < 3) {
+            new Game().play();
+            return;
+        }
+        DungeonGenerator dungeon = new DungeonGenerator(Long.parseLong(args[0]),
+            Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+        if (args.length < 4) {
+            new Game(ReaderCommandSource.console(), OutputSink.console(), SharedScores.INSTANCE, dungeon).play();
+            return;
+        }
+        java.io.File pageFile = java.io.File.createTempFile("dungeon-rooms", ".pages");
+        try (PagedRoomStore paged = PagedRoomStore.withMemoryBudget(dungeon, pageFile,
+                Long.parseLong(args[3]) * 1024 * 1024)) {
+            new Game(ReaderCommandSource.console(), OutputSink.console(), SharedScores.INSTANCE, paged).play();
+        }
     }
 } 
\ No newline at end of file
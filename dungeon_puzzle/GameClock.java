@@ -0,0 +1,13 @@
+package games.dungeon_puzzle;
+
+/**
+ * Where a session reads the time. The game reads it once per input line,
+ * so a clock that replays recorded times replays the session exactly.
+ * Only differences between readings matter, so the system clock is the
+ * monotonic one and a change to the wall clock can't end a game early.
+ */
+public interface GameClock {
+    GameClock SYSTEM = () -> System.nanoTime() / 1_000_000;
+
+    long millis();
+}
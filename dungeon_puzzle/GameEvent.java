@@ -1,19 +1,118 @@
 package games.dungeon_puzzle;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * One slot of an EventBus ring. Slots are allocated once and overwritten
+ * as the ring wraps, so handlers must copy out anything they keep past
+ * their onEvent call.
+ *
+ * The sequence doubles as a stamp: it reads WRITING while set() is
+ * filling the slot and is published with release semantics afterwards,
+ * so copyFrom() can tell a clean read from one the publisher overwrote
+ * partway through.
+ */
 public class GameEvent {
-    private String type;
-    private String message;
+    private static final long WRITING = -1;
+    private static final VarHandle SEQUENCE;
+
+    static {
+        try {
+            SEQUENCE = MethodHandles.lookup().findVarHandle(GameEvent.class, "sequence", long.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    public enum Type {
+        // value: points scored where there are any, else as noted
+        MOVED,
+        ITEM_TAKEN,          // value: item value
+        ITEM_DROPPED,        // value: item value
+        COMBAT_STARTED,      // value: enemy health
+        PLAYER_HIT,          // value: damage dealt to the enemy
+        ENEMY_HIT,           // value: damage taken from the enemy
+        ESCAPED,
+        ENEMY_DEFEATED,
+        PUZZLE_SOLVED,
+        PUZZLE_FAILED,
+        GAME_WON,            // value: final score
+        PLAYER_DIED,         // value: final score
+        TIMED_OUT,           // value: final score
+        QUIT
+    }
 
-    public GameEvent(String type, String message) {
+    private long sequence;
+    private Type type;
+    private int roomId;
+    private int value;
+    private String subject;
+    private long elapsedMillis;
+
+    void set(long sequence, Type type, int roomId, int value, String subject, long elapsedMillis) {
+        SEQUENCE.setOpaque(this, WRITING);
+        VarHandle.storeStoreFence();
         this.type = type;
-        this.message = message;
+        this.roomId = roomId;
+        this.value = value;
+        this.subject = subject;
+        this.elapsedMillis = elapsedMillis;
+        SEQUENCE.setRelease(this, sequence);
+    }
+
+    /**
+     * Copies the slot's event into this one if the slot still holds the
+     * given sequence, and returns false if it doesn't or if it was
+     * rewritten during the copy.
+     */
+    boolean copyFrom(GameEvent slot, long expected) {
+        if ((long) SEQUENCE.getAcquire(slot) != expected) {
+            return false;
+        }
+        type = slot.type;
+        roomId = slot.roomId;
+        value = slot.value;
+        subject = slot.subject;
+        elapsedMillis = slot.elapsedMillis;
+        VarHandle.loadLoadFence();
+        if ((long) SEQUENCE.getOpaque(slot) != expected) {
+            return false;
+        }
+        sequence = expected;
+        return true;
+    }
+
+    public long getSequence() {
+        return sequence;
     }
 
-    public String getType() {
+    public Type getType() {
         return type;
     }
 
-    public String getMessage() {
-        return message;
+    // The room the player was in
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public int getValue() {
+        return value;
+    }
+
+    // The item, enemy or puzzle involved, or null
+    public String getSubject() {
+        return subject;
+    }
+
+    // Session time when the event happened
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    @Override
+    public String toString() {
+        return sequence + " " + type + " room=" + roomId + " value=" + value
+            + (subject != null ? " " + subject : "") + " t=" + elapsedMillis;
     }
-} 
\ No newline at end of file
+}
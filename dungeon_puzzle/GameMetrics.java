@@ -0,0 +1,172 @@
+package games.dungeon_puzzle;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+/**
+ * Counters and timings shared by every session in the JVM, for
+ * monitoring a running server over JMX. Game times each command into
+ * its command's LatencyHistogram and feeds its event bus here, the
+ * servers count sessions, and ScoreManager times its reads and writes.
+ *
+ * Recording only touches LongAdders and atomic counters: no locks and
+ * no allocation, so it stays on all the time. Nothing is visible over
+ * JMX until registerMBeans() is called, which the servers do at startup.
+ */
+public final class GameMetrics implements GameMetricsMBean, EventBus.Handler {
+    public static final GameMetrics GLOBAL = new GameMetrics();
+    private static final String DOMAIN = "games.dungeon_puzzle";
+
+    private final LongAdder commands = new LongAdder();
+    private final LongAdder unknownCommands = new LongAdder();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final LongAdder sessionsStarted = new LongAdder();
+    private final LongAdder[] events = new LongAdder[GameEvent.Type.values().length];
+    final LatencyHistogram combatRounds = new LatencyHistogram();
+    final LatencyHistogram scoreSaves = new LatencyHistogram();
+    final LatencyHistogram scoreLoads = new LatencyHistogram();
+
+    // Commands per second is measured between reads
+    private long rateCommands;
+    private long rateNanos = System.nanoTime();
+    private double rate;
+
+    private GameMetrics() {
+        for (int i = 0; i < events.length; i++) {
+            events[i] = new LongAdder();
+        }
+    }
+
+    void commandExecuted(CommandRegistry.Command command, long nanos) {
+        commands.increment();
+        command.latency.record(nanos);
+    }
+
+    void commandUnknown() {
+        commands.increment();
+        unknownCommands.increment();
+    }
+
+    public void sessionOpened() {
+        sessionsStarted.increment();
+        activeSessions.incrementAndGet();
+    }
+
+    public void sessionClosed() {
+        activeSessions.decrementAndGet();
+    }
+
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        events[event.getType().ordinal()].increment();
+    }
+
+    /**
+     * Publishes this object and one LatencyMBean per command, plus combat
+     * rounds and score store reads and writes, on the platform MBean
+     * server. Safe to call more than once.
+     */
+    public static synchronized void registerMBeans() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            register(server, new ObjectName(DOMAIN + ":type=GameMetrics"), GLOBAL, GameMetricsMBean.class);
+            for (CommandRegistry.Command command : Game.COMMANDS.getCommands()) {
+                register(server, latencyName("Command", command.verb), command.latency, LatencyMBean.class);
+            }
+            register(server, latencyName("Combat", "round"), GLOBAL.combatRounds, LatencyMBean.class);
+            register(server, latencyName("ScoreStore", "save"), GLOBAL.scoreSaves, LatencyMBean.class);
+            register(server, latencyName("ScoreStore", "load"), GLOBAL.scoreLoads, LatencyMBean.class);
+        } catch (JMException e) {
+            throw new IllegalStateException("Could not register game metrics", e);
+        }
+    }
+
+    private static ObjectName latencyName(String type, String name) throws JMException {
+        return new ObjectName(DOMAIN + ":type=" + type + "Latency,name=" + ObjectName.quote(name));
+    }
+
+    private static <T> void register(MBeanServer server, ObjectName name, T bean, Class<T> type)
+            throws JMException {
+        if (!server.isRegistered(name)) {
+            server.registerMBean(new StandardMBean(bean, type), name);
+        }
+    }
+
+    @Override
+    public long getCommands() {
+        return commands.sum();
+    }
+
+    @Override
+    public synchronized double getCommandsPerSecond() {
+        long now = System.nanoTime();
+        long total = commands.sum();
+        // Reads closer than a second apart repeat the last figure
+        if (now - rateNanos >= 1_000_000_000L) {
+            rate = (total - rateCommands) * 1e9 / (now - rateNanos);
+            rateCommands = total;
+            rateNanos = now;
+        }
+        return rate;
+    }
+
+    @Override
+    public long getUnknownCommands() {
+        return unknownCommands.sum();
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    @Override
+    public long getSessionsStarted() {
+        return sessionsStarted.sum();
+    }
+
+    @Override
+    public long getCombatsStarted() {
+        return count(GameEvent.Type.COMBAT_STARTED);
+    }
+
+    @Override
+    public long getCombatsWon() {
+        return count(GameEvent.Type.ENEMY_DEFEATED);
+    }
+
+    @Override
+    public long getCombatsLost() {
+        return count(GameEvent.Type.PLAYER_DIED);
+    }
+
+    @Override
+    public long getCombatsEscaped() {
+        return count(GameEvent.Type.ESCAPED);
+    }
+
+    @Override
+    public long getPuzzlesAttempted() {
+        return count(GameEvent.Type.PUZZLE_SOLVED) + count(GameEvent.Type.PUZZLE_FAILED);
+    }
+
+    @Override
+    public long getPuzzlesSolved() {
+        return count(GameEvent.Type.PUZZLE_SOLVED);
+    }
+
+    @Override
+    public long getGamesWon() {
+        return count(GameEvent.Type.GAME_WON);
+    }
+
+    public long count(GameEvent.Type type) {
+        return events[type.ordinal()].sum();
+    }
+}
@@ -0,0 +1,20 @@
+package games.dungeon_puzzle;
+
+/**
+ * JMX view of GameMetrics: what every session in this JVM has done
+ * since startup. Per-command latencies are separate LatencyMBeans.
+ */
+public interface GameMetricsMBean {
+    long getCommands();
+    double getCommandsPerSecond();
+    long getUnknownCommands();
+    int getActiveSessions();
+    long getSessionsStarted();
+    long getCombatsStarted();
+    long getCombatsWon();
+    long getCombatsLost();
+    long getCombatsEscaped();
+    long getPuzzlesAttempted();
+    long getPuzzlesSolved();
+    long getGamesWon();
+}
@@ -0,0 +1,184 @@
+package games.dungeon_puzzle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hosts one Game per TCP connection, each on its own virtual thread. A
+ * session blocked waiting for input parks its virtual thread instead of
+ * holding a platform thread, so idle players cost only their heap.
+ * Input buffers are kept small for the same reason, and a line is cut
+ * off at MAX_LINE_BYTES, so a client that never sends a newline can't
+ * make the server buffer without limit. Output is rendered a turn at a
+ * time and written straight to the socket.
+ *
+ * Time limits fire from one timing wheel shared by every session. A
+ * firing takes the session's lock on a virtual thread of its own, and
+ * when it ends the game it shuts the socket's input so the blocked read
+ * returns and the session closes without waiting for the player.
+ */
+public class GameServer implements Closeable {
+    private static final int DEFAULT_PORT = 4000;
+    private static final int BACKLOG = 1024;
+    private static final int READ_BUFFER_BYTES = 256;
+    private static final int MAX_LINE_BYTES = 1024;
+
+    private final ServerSocket serverSocket;
+    private final ExecutorService sessions;
+    private final ScoreManager scoreManager;
+    private final AtomicInteger activeSessions;
+    private final TimingWheel timers;
+
+    public GameServer(int port, ScoreManager scoreManager) throws IOException {
+        // Local connections only
+        this.serverSocket = new ServerSocket(port, BACKLOG, InetAddress.getLoopbackAddress());
+        this.sessions = Executors.newVirtualThreadPerTaskExecutor();
+        this.scoreManager = scoreManager;
+        this.activeSessions = new AtomicInteger();
+        this.timers = TimingWheel.start("game-timers");
+    }
+
+    public void serve() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> runSession(socket));
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    // The game ending in any way closes this connection and nothing else
+    private void runSession(Socket socket) {
+        activeSessions.incrementAndGet();
+        GameMetrics.GLOBAL.sessionOpened();
+        try (Socket connection = socket) {
+            LineReader reader = new LineReader(connection.getInputStream());
+            OutputSink out = OutputSink.of(connection.getOutputStream());
+            Game game = new Game(out, scoreManager);
+            ReentrantLock turn = new ReentrantLock();
+            try {
+                game.start();
+                game.armTimers(timers, task -> sessions.execute(() -> {
+                    turn.lock();
+                    try {
+                        task.run();
+                        if (!game.isActive()) {
+                            connection.shutdownInput();
+                        }
+                    } catch (IOException e) {
+                        // Already closing
+                    } finally {
+                        turn.unlock();
+                    }
+                }));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    turn.lock();
+                    try {
+                        if (!game.isActive() || !game.step(line)) {
+                            break;
+                        }
+                    } finally {
+                        turn.unlock();
+                    }
+                }
+            } finally {
+                game.disarmTimers();
+            }
+        } catch (IOException e) {
+            // Connection dropped; the session is over either way
+        } finally {
+            activeSessions.decrementAndGet();
+            GameMetrics.GLOBAL.sessionClosed();
+        }
+    }
+
+    /**
+     * Reads UTF-8 lines ended by \n or \r\n. A line's first MAX_LINE_BYTES
+     * are kept and the rest, up to its newline, is read and dropped.
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final byte[] buffer = new byte[READ_BUFFER_BYTES];
+        private int position;
+        private int limit;
+        // Grows with the longest line seen, up to MAX_LINE_BYTES
+        private byte[] line = new byte[64];
+
+        LineReader(InputStream in) {
+            this.in = in;
+        }
+
+        // Null at the end of the stream; a last line without a newline still counts
+        String readLine() throws IOException {
+            int length = 0;
+            boolean any = false;
+            while (true) {
+                if (position == limit) {
+                    int read = in.read(buffer);
+                    if (read < 0) {
+                        return any ? decode(length) : null;
+                    }
+                    position = 0;
+                    limit = read;
+                }
+                byte b = buffer[position++];
+                any = true;
+                if (b == '\n') {
+                    return decode(length);
+                }
+                if (length < MAX_LINE_BYTES) {
+                    if (length == line.length) {
+                        line = Arrays.copyOf(line, Math.min(MAX_LINE_BYTES, 2 * line.length));
+                    }
+                    line[length++] = b;
+                }
+            }
+        }
+
+        private String decode(int length) {
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        sessions.shutdownNow();
+        timers.close();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        GameMetrics.registerMBeans();
+        try (GameServer server = new GameServer(port, new ScoreManager())) {
+            System.out.println("Dungeon Puzzler server listening on localhost:" + server.getPort());
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package games.dungeon_puzzle;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * What the player carries, as stacks of catalog items. Holding a second
+ * copy of an item adds to its stack instead of replacing it. As a
+ * Collection it holds every copy, and getStacks() lists each item once.
+ *
+ * Total value, the count per category and the most valuable item are
+ * maintained as items come and go, so reading any of them is O(1) however
+ * much the player carries. For the most valuable item, each held item
+ * sits in a list for its value, and a two-level bitmap over the values
+ * finds the highest non-empty list with two leading-zero counts. Values
+ * outside 0 to MAX_TRACKED_VALUE share the end lists, which are scanned
+ * when they are the answer.
+ */
+public class Inventory extends AbstractCollection<Item> {
+    static final int MAX_TRACKED_VALUE = 4095;
+    private static final int[] NONE = new int[0];
+
+    // Indexed by catalog id, grown as higher ids arrive
+    private int[] counts = NONE;
+    private int[] stackAt = NONE;
+    private int[] nextAtValue = NONE;
+    private int[] prevAtValue = NONE;
+
+    // Held ids, one per stack; removal moves the last stack into the gap
+    private int[] stacks = NONE;
+    private int stackCount;
+    private final List<Item> stackView = new AbstractList<>() {
+        @Override
+        public Item get(int index) {
+            if (index >= stackCount) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            return ItemCatalog.get(stacks[index]);
+        }
+
+        @Override
+        public int size() {
+            return stackCount;
+        }
+    };
+
+    // First held id for each value, grown up to the highest value seen
+    private int[] headAtValue = NONE;
+    private long[] valueWords = new long[0];
+    private long valueSummary;
+
+    private int size;
+    private int totalValue;
+    private final int[] categoryCounts = new int[Item.Category.values().length];
+
+    @Override
+    public boolean add(Item item) {
+        int id = item.getId();
+        ensureId(id);
+        if (counts[id]++ == 0) {
+            if (stackCount == stacks.length) {
+                stacks = Arrays.copyOf(stacks, Math.max(4, stackCount * 2));
+            }
+            stackAt[id] = stackCount;
+            stacks[stackCount++] = id;
+            link(id, bucket(item.getValue()));
+        }
+        size++;
+        totalValue += item.getValue();
+        categoryCounts[item.getCategory().ordinal()]++;
+        return true;
+    }
+
+    // Removes one copy
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof Item item) || count(item) == 0) {
+            return false;
+        }
+        int id = item.getId();
+        if (--counts[id] == 0) {
+            int last = stacks[--stackCount];
+            stacks[stackAt[id]] = last;
+            stackAt[last] = stackAt[id];
+            unlink(id, bucket(item.getValue()));
+        }
+        size--;
+        totalValue -= item.getValue();
+        categoryCounts[item.getCategory().ordinal()]--;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof Item item && count(item) > 0;
+    }
+
+    public int count(Item item) {
+        int id = item.getId();
+        return id < counts.length ? counts[id] : 0;
+    }
+
+    public int count(Item.Category category) {
+        return categoryCounts[category.ordinal()];
+    }
+
+    // The held item with this name, or null
+    public Item find(String name) {
+        Item item = ItemCatalog.find(name);
+        return item != null && count(item) > 0 ? item : null;
+    }
+
+    // Every copy counts, cursed items included
+    public int getTotalValue() {
+        return totalValue;
+    }
+
+    // Null when empty; ties go to the most recently picked up
+    public Item getMostValuable() {
+        if (valueSummary == 0) {
+            return null;
+        }
+        int word = 63 - Long.numberOfLeadingZeros(valueSummary);
+        int value = (word << 6) + 63 - Long.numberOfLeadingZeros(valueWords[word]);
+        Item best = ItemCatalog.get(headAtValue[value]);
+        if (value == 0 || value == MAX_TRACKED_VALUE) {
+            for (int id = nextAtValue[best.getId()]; id >= 0; id = nextAtValue[id]) {
+                Item item = ItemCatalog.get(id);
+                if (item.getValue() > best.getValue()) {
+                    best = item;
+                }
+            }
+        }
+        return best;
+    }
+
+    public List<Item> getStacks() {
+        return stackView;
+    }
+
+    public int getStackCount() {
+        return stackCount;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    // Each stack's item, repeated once per copy
+    @Override
+    public Iterator<Item> iterator() {
+        return new Iterator<>() {
+            private int stack;
+            private int copy;
+
+            @Override
+            public boolean hasNext() {
+                return stack < stackCount;
+            }
+
+            @Override
+            public Item next() {
+                if (stack >= stackCount) {
+                    throw new NoSuchElementException();
+                }
+                int id = stacks[stack];
+                if (++copy == counts[id]) {
+                    stack++;
+                    copy = 0;
+                }
+                return ItemCatalog.get(id);
+            }
+        };
+    }
+
+    /**
+     * Stack indices of the items that share a value with another held
+     * item, oldest pickup first within each value. Replaying them through
+     * touch() on an inventory with the same stacks restores which of the
+     * tied items getMostValuable() answers with.
+     */
+    int[] tieOrder() {
+        int[] order = new int[stackCount];
+        int count = 0;
+        for (int word = 0; word < valueWords.length; word++) {
+            for (long bits = valueWords[word]; bits != 0; bits &= bits - 1) {
+                int head = headAtValue[(word << 6) + Long.numberOfTrailingZeros(bits)];
+                if (nextAtValue[head] < 0) {
+                    continue;
+                }
+                int tail = head;
+                while (nextAtValue[tail] >= 0) {
+                    tail = nextAtValue[tail];
+                }
+                for (int id = tail; id >= 0; id = prevAtValue[id]) {
+                    order[count++] = stackAt[id];
+                }
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    // Makes the stack at this index the latest pickup among items of its value
+    void touch(int stackIndex) {
+        if (stackIndex < 0 || stackIndex >= stackCount) {
+            throw new IndexOutOfBoundsException(stackIndex);
+        }
+        int id = stacks[stackIndex];
+        int value = bucket(ItemCatalog.get(id).getValue());
+        unlink(id, value);
+        link(id, value);
+    }
+
+    private static int bucket(int value) {
+        return Math.max(0, Math.min(value, MAX_TRACKED_VALUE));
+    }
+
+    private void ensureId(int id) {
+        if (id >= counts.length) {
+            int length = Math.max(id + 1, counts.length * 2);
+            counts = Arrays.copyOf(counts, length);
+            stackAt = Arrays.copyOf(stackAt, length);
+            nextAtValue = Arrays.copyOf(nextAtValue, length);
+            prevAtValue = Arrays.copyOf(prevAtValue, length);
+        }
+    }
+
+    private void link(int id, int value) {
+        if (value >= headAtValue.length) {
+            int oldLength = headAtValue.length;
+            headAtValue = Arrays.copyOf(headAtValue, Math.min(MAX_TRACKED_VALUE + 1, Math.max(value + 1, oldLength * 2)));
+            Arrays.fill(headAtValue, oldLength, headAtValue.length, -1);
+            valueWords = Arrays.copyOf(valueWords, (headAtValue.length + 63) >>> 6);
+        }
+        int head = headAtValue[value];
+        nextAtValue[id] = head;
+        prevAtValue[id] = -1;
+        if (head >= 0) {
+            prevAtValue[head] = id;
+        }
+        headAtValue[value] = id;
+        valueWords[value >>> 6] |= 1L << value;
+        valueSummary |= 1L << (value >>> 6);
+    }
+
+    private void unlink(int id, int value) {
+        int next = nextAtValue[id];
+        int prev = prevAtValue[id];
+        if (next >= 0) {
+            prevAtValue[next] = prev;
+        }
+        if (prev >= 0) {
+            nextAtValue[prev] = next;
+        } else {
+            headAtValue[value] = next;
+        }
+        if (headAtValue[value] < 0) {
+            valueWords[value >>> 6] &= ~(1L << value);
+            if (valueWords[value >>> 6] == 0) {
+                valueSummary &= ~(1L << (value >>> 6));
+            }
+        }
+    }
+}
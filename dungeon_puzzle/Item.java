@@ -1,14 +1,26 @@
 package games.dungeon_puzzle;
 
+// Immutable and shared: get instances from ItemCatalog
 public class Item {
-    private String name;
-    private String description;
-    private int value;
+    public enum Category { LIGHT, TEXT, PORTAL, SUPPORT, COMMON }
 
-    public Item(String name, String description, int value) {
+    private final int id;
+    private final String name;
+    private final String description;
+    private final int value;
+    private final Category category;
+
+    Item(int id, String name, String description, int value, Category category) {
+        this.id = id;
         this.name = name;
         this.description = description;
         this.value = value;
+        this.category = category;
+    }
+
+    // Dense catalog id, usable as an array index
+    public int getId() {
+        return id;
     }
 
     public String getName() {
@@ -22,4 +34,8 @@ public class Item {
     public int getValue() {
         return value;
     }
-} 
\ No newline at end of file
+
+    public Category getCategory() {
+        return category;
+    }
+}
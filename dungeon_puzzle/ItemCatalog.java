@@ -0,0 +1,64 @@
+package games.dungeon_puzzle;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Every item definition the process knows about, each held as one shared
+ * immutable Item with a dense int id. Rooms and inventories store ids,
+ * and anything that needs the name, description or value reads them from
+ * the single instance here.
+ *
+ * Names identify definitions: interning a name that is already known
+ * returns the existing item, so the first definition wins. Reads are
+ * lock-free; interning new names takes a lock and is meant for startup
+ * and for restoring old checkpoints.
+ */
+public final class ItemCatalog {
+    private static final ConcurrentHashMap<String, Item> byName = new ConcurrentHashMap<>();
+    private static volatile Item[] byId = new Item[64];
+    private static int size;
+
+    private ItemCatalog() {
+    }
+
+    public static Item intern(String name, String description, int value) {
+        return intern(name, description, value, Item.Category.COMMON);
+    }
+
+    public static Item intern(String name, String description, int value, Item.Category category) {
+        Item item = byName.get(name);
+        if (item != null) {
+            return item;
+        }
+        synchronized (ItemCatalog.class) {
+            item = byName.get(name);
+            if (item != null) {
+                return item;
+            }
+            Item[] items = byId;
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+            }
+            item = new Item(size, name, description, value, category);
+            items[size++] = item;
+            // Publish the array before the name, so any id handed out can be resolved
+            byId = items;
+            byName.put(name, item);
+            return item;
+        }
+    }
+
+    // The item with this name, or null if nothing defines it
+    public static Item find(String name) {
+        return byName.get(name);
+    }
+
+    public static Item get(int id) {
+        return byId[id];
+    }
+
+    public static int size() {
+        return byName.size();
+    }
+}
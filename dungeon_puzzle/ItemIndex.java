@@ -0,0 +1,265 @@
+package games.dungeon_puzzle;
+
+/**
+ * Value-ordered index over every item location in the world, kept as a
+ * left-leaning red-black BST. Entries are keyed by (value, catalog id, owner),
+ * where owner is a room id or INVENTORY, so the same item can sit in
+ * several places at once. Rooms and the inventory update the index as
+ * items move, which keeps range queries at O(log n + k).
+ */
+public class ItemIndex {
+    public static final int INVENTORY = -1;
+
+    private static final boolean RED = true;
+    private static final boolean BLACK = false;
+
+    public interface Visitor {
+        void visit(Item item, int owner);
+    }
+
+    private static final class Node {
+        Item item;
+        int value;
+        int id;
+        int owner;
+        Node left, right;
+        boolean color;
+
+        Node(Item item, int owner) {
+            this.item = item;
+            this.value = item.getValue();
+            this.id = item.getId();
+            this.owner = owner;
+            this.color = RED;
+        }
+    }
+
+    private Node root;
+    private int size;
+    private long version;
+
+    public int size() {
+        return size;
+    }
+
+    // Bumped on every add and remove that changes the index, so callers can tell when cached answers went stale
+    public long getVersion() {
+        return version;
+    }
+
+    // Adding an entry that is already there changes nothing
+    public void add(Item item, int owner) {
+        int before = size;
+        root = insert(root, item, owner);
+        root.color = BLACK;
+        if (size != before) {
+            version++;
+        }
+    }
+
+    public void remove(Item item, int owner) {
+        if (!contains(item, owner)) {
+            return;
+        }
+        if (!isRed(root.left) && !isRed(root.right)) {
+            root.color = RED;
+        }
+        version++;
+        root = delete(root, item.getValue(), item.getId(), owner);
+        if (root != null) {
+            root.color = BLACK;
+        }
+        size--;
+    }
+
+    public boolean contains(Item item, int owner) {
+        Node x = root;
+        while (x != null) {
+            int cmp = compare(item.getValue(), item.getId(), owner, x);
+            if (cmp == 0) {
+                return true;
+            }
+            x = cmp < 0 ? x.left : x.right;
+        }
+        return false;
+    }
+
+    /**
+     * Visits every entry with minValue <= value <= maxValue in ascending
+     * value order without allocating.
+     */
+    public void forEachInRange(int minValue, int maxValue, Visitor visitor) {
+        visitRange(root, minValue, maxValue, visitor);
+    }
+
+    public int countInRange(int minValue, int maxValue) {
+        return countRange(root, minValue, maxValue);
+    }
+
+    private int countRange(Node h, int minValue, int maxValue) {
+        if (h == null) {
+            return 0;
+        }
+        int count = 0;
+        if (minValue <= h.value) {
+            count += countRange(h.left, minValue, maxValue);
+        }
+        if (minValue <= h.value && h.value <= maxValue) {
+            count++;
+        }
+        if (h.value <= maxValue) {
+            count += countRange(h.right, minValue, maxValue);
+        }
+        return count;
+    }
+
+    private void visitRange(Node h, int minValue, int maxValue, Visitor visitor) {
+        if (h == null) {
+            return;
+        }
+        // Equal values can sit on either side because ties are broken by id
+        if (minValue <= h.value) {
+            visitRange(h.left, minValue, maxValue, visitor);
+        }
+        if (minValue <= h.value && h.value <= maxValue) {
+            visitor.visit(h.item, h.owner);
+        }
+        if (h.value <= maxValue) {
+            visitRange(h.right, minValue, maxValue, visitor);
+        }
+    }
+
+    private static int compare(int value, int id, int owner, Node node) {
+        if (value != node.value) {
+            return Integer.compare(value, node.value);
+        }
+        if (id != node.id) {
+            return Integer.compare(id, node.id);
+        }
+        return Integer.compare(owner, node.owner);
+    }
+
+    private Node insert(Node h, Item item, int owner) {
+        if (h == null) {
+            size++;
+            return new Node(item, owner);
+        }
+        int cmp = compare(item.getValue(), item.getId(), owner, h);
+        if (cmp < 0) {
+            h.left = insert(h.left, item, owner);
+        } else if (cmp > 0) {
+            h.right = insert(h.right, item, owner);
+        } else {
+            h.item = item;
+        }
+        return balance(h);
+    }
+
+    private Node delete(Node h, int value, int id, int owner) {
+        if (compare(value, id, owner, h) < 0) {
+            if (!isRed(h.left) && !isRed(h.left.left)) {
+                h = moveRedLeft(h);
+            }
+            h.left = delete(h.left, value, id, owner);
+        } else {
+            if (isRed(h.left)) {
+                h = rotateRight(h);
+            }
+            if (compare(value, id, owner, h) == 0 && h.right == null) {
+                return null;
+            }
+            if (!isRed(h.right) && !isRed(h.right.left)) {
+                h = moveRedRight(h);
+            }
+            if (compare(value, id, owner, h) == 0) {
+                Node successor = min(h.right);
+                h.item = successor.item;
+                h.value = successor.value;
+                h.id = successor.id;
+                h.owner = successor.owner;
+                h.right = deleteMin(h.right);
+            } else {
+                h.right = delete(h.right, value, id, owner);
+            }
+        }
+        return balance(h);
+    }
+
+    private Node deleteMin(Node h) {
+        if (h.left == null) {
+            return null;
+        }
+        if (!isRed(h.left) && !isRed(h.left.left)) {
+            h = moveRedLeft(h);
+        }
+        h.left = deleteMin(h.left);
+        return balance(h);
+    }
+
+    private Node min(Node h) {
+        while (h.left != null) {
+            h = h.left;
+        }
+        return h;
+    }
+
+    private boolean isRed(Node x) {
+        return x != null && x.color == RED;
+    }
+
+    private Node rotateLeft(Node h) {
+        Node x = h.right;
+        h.right = x.left;
+        x.left = h;
+        x.color = h.color;
+        h.color = RED;
+        return x;
+    }
+
+    private Node rotateRight(Node h) {
+        Node x = h.left;
+        h.left = x.right;
+        x.right = h;
+        x.color = h.color;
+        h.color = RED;
+        return x;
+    }
+
+    private void flipColors(Node h) {
+        h.color = !h.color;
+        h.left.color = !h.left.color;
+        h.right.color = !h.right.color;
+    }
+
+    private Node moveRedLeft(Node h) {
+        flipColors(h);
+        if (isRed(h.right.left)) {
+            h.right = rotateRight(h.right);
+            h = rotateLeft(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    private Node moveRedRight(Node h) {
+        flipColors(h);
+        if (isRed(h.left.left)) {
+            h = rotateRight(h);
+            flipColors(h);
+        }
+        return h;
+    }
+
+    private Node balance(Node h) {
+        if (isRed(h.right) && !isRed(h.left)) {
+            h = rotateLeft(h);
+        }
+        if (isRed(h.left) && isRed(h.left.left)) {
+            h = rotateRight(h);
+        }
+        if (isRed(h.left) && isRed(h.right)) {
+            flipColors(h);
+        }
+        return h;
+    }
+}
@@ -0,0 +1,80 @@
+package games.dungeon_puzzle;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+
+/**
+ * The distinct items lying in a room, stored as catalog ids in the order
+ * they arrived. A room holds a handful of items, so a packed int array
+ * with linear search beats a hash map on both memory and speed. Reads as
+ * a List of the shared catalog instances.
+ */
+final class ItemSet extends AbstractList<Item> {
+    private static final int[] EMPTY = new int[0];
+
+    private int[] ids = EMPTY;
+    private int size;
+
+    // False if the item was already here
+    boolean addItem(Item item) {
+        int id = item.getId();
+        if (indexOfId(id) >= 0) {
+            return false;
+        }
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, Math.max(4, size * 2));
+        }
+        ids[size++] = id;
+        modCount++;
+        return true;
+    }
+
+    boolean removeItem(Item item) {
+        int i = indexOfId(item.getId());
+        if (i < 0) {
+            return false;
+        }
+        System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+        size--;
+        modCount++;
+        return true;
+    }
+
+    boolean hasItem(Item item) {
+        return item != null && indexOfId(item.getId()) >= 0;
+    }
+
+    // The item with this name if it is here
+    Item find(String name) {
+        Item item = ItemCatalog.find(name);
+        return hasItem(item) ? item : null;
+    }
+
+    @Override
+    public void clear() {
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public Item get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return ItemCatalog.get(ids[index]);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int indexOfId(int id) {
+        for (int i = 0; i < size; i++) {
+            if (ids[i] == id) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
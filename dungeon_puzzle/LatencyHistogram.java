@@ -0,0 +1,129 @@
+package games.dungeon_puzzle;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Durations in nanoseconds, counted in log-linear buckets: each power of
+ * two is split into 32 equal buckets, so a bucket is never wider than
+ * about 3% of the values in it. Durations of 2^(MAX_EXPONENT + 1) ns,
+ * about 36 minutes, or more land in the last bucket.
+ *
+ * Recording is an index computation and an atomic increment, so any
+ * number of threads can record at once without locks or allocation.
+ * Threads are spread over a few copies of the buckets by thread id, so
+ * sessions finishing the same kind of command at once don't all hit
+ * the same counter.
+ * Readers walk the buckets, and see a consistent enough picture for
+ * monitoring while recording carries on. reset() races with recording
+ * in the same way.
+ */
+final class LatencyHistogram implements LatencyMBean {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << (MAX_EXPONENT + 1)) - 1;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+    private static final int STRIPES = 4;
+
+    private final AtomicLongArray counts = new AtomicLongArray(STRIPES * BUCKETS);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_VALUE));
+        int stripe = (int) Thread.currentThread().threadId() & (STRIPES - 1);
+        counts.getAndIncrement(stripe * BUCKETS + bucketOf(value));
+        sum.add(value);
+        long seen = max.get();
+        while (value > seen && !max.compareAndSet(seen, value)) {
+            seen = max.get();
+        }
+    }
+
+    // Values below SUB_BUCKETS get a bucket each; above, the top six bits pick one
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    // Middle of the range of values that land in the bucket
+    static long valueOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket >>> SUB_BUCKET_BITS) - 1;
+        long low = (long) (bucket - (shift << SUB_BUCKET_BITS)) << shift;
+        return low + ((1L << shift) >>> 1);
+    }
+
+    // The value at quantile q (0 to 1) in nanoseconds, or 0 with nothing recorded
+    long quantile(double q) {
+        long[] merged = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            merged[i % BUCKETS] += counts.get(i);
+            count += counts.get(i);
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += merged[i];
+            if (seen >= rank) {
+                return Math.min(valueOf(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    @Override
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    @Override
+    public double getMeanMicros() {
+        long count = getCount();
+        return count == 0 ? 0 : sum.sum() / (count * 1000.0);
+    }
+
+    @Override
+    public double getP50Micros() {
+        return quantile(0.5) / 1000.0;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return quantile(0.99) / 1000.0;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return quantile(0.999) / 1000.0;
+    }
+
+    @Override
+    public double getMaxMicros() {
+        return max.get() / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+}
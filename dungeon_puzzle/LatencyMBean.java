@@ -0,0 +1,15 @@
+package games.dungeon_puzzle;
+
+/**
+ * JMX view of one LatencyHistogram. Percentiles are accurate to about
+ * 3%; times are in microseconds.
+ */
+public interface LatencyMBean {
+    long getCount();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+    void reset();
+}
@@ -0,0 +1,142 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lock-free top-K board ordered by Score.compareTo. The board is an
+ * immutable sorted array behind an AtomicReference: a submit copies the
+ * array with the new score inserted and publishes it with one CAS, so a
+ * reader always sees a whole board from a single moment. Scores that
+ * can't beat the last entry of a full board are rejected without a copy.
+ */
+public class Leaderboard {
+    private final int capacity;
+    private final AtomicReference<Score[]> board;
+
+    public Leaderboard(int capacity) {
+        this.capacity = capacity;
+        this.board = new AtomicReference<>(new Score[0]);
+    }
+
+    public boolean submit(Score score) {
+        while (true) {
+            Score[] current = board.get();
+            if (!qualifies(current, score)) {
+                return false;
+            }
+            int position = insertionPoint(current, score);
+            Score[] next = new Score[Math.min(current.length + 1, capacity)];
+            System.arraycopy(current, 0, next, 0, position);
+            next[position] = score;
+            System.arraycopy(current, position, next, position + 1, next.length - position - 1);
+            if (board.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of scores at once: the batch is merge sorted, trimmed to
+     * the board size and merged with the current board in a single CAS.
+     */
+    public void submitAll(List<Score> scores) {
+        if (scores.isEmpty()) {
+            return;
+        }
+        List<Score> batch = new ArrayList<>(scores);
+        mergeSort(batch, 0, batch.size() - 1);
+        while (true) {
+            Score[] current = board.get();
+            Score[] next = new Score[Math.min(current.length + batch.size(), capacity)];
+            int i = 0, j = 0;
+            for (int k = 0; k < next.length; k++) {
+                if (j >= batch.size() || (i < current.length && current[i].compareTo(batch.get(j)) <= 0)) {
+                    next[k] = current[i++];
+                } else {
+                    next[k] = batch.get(j++);
+                }
+            }
+            if (board.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    public boolean qualifies(Score score) {
+        return qualifies(board.get(), score);
+    }
+
+    // Same test as qualifies(Score) for callers that haven't built a Score yet
+    public boolean qualifies(int score, long timeTaken) {
+        Score[] current = board.get();
+        if (current.length < capacity) {
+            return true;
+        }
+        Score last = current[current.length - 1];
+        return score > last.getScore() || (score == last.getScore() && timeTaken < last.getTimeTaken());
+    }
+
+    private boolean qualifies(Score[] current, Score score) {
+        return current.length < capacity || score.compareTo(current[current.length - 1]) < 0;
+    }
+
+    public List<Score> snapshot() {
+        return Collections.unmodifiableList(Arrays.asList(board.get()));
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Binary search for the slot after every score that ranks equal or better,
+    // so earlier submissions keep their place on ties
+    private static int insertionPoint(Score[] scores, Score score) {
+        int left = 0;
+        int right = scores.length - 1;
+        while (left <= right) {
+            int mid = left + (right - left) / 2;
+            if (scores[mid].compareTo(score) <= 0) {
+                left = mid + 1;
+            } else {
+                right = mid - 1;
+            }
+        }
+        return left;
+    }
+
+    static void mergeSort(List<Score> scores, int left, int right) {
+        if (left < right) {
+            int mid = (left + right) / 2;
+            mergeSort(scores, left, mid);
+            mergeSort(scores, mid + 1, right);
+            merge(scores, left, mid, right);
+        }
+    }
+
+    private static void merge(List<Score> scores, int left, int mid, int right) {
+        List<Score> leftList = new ArrayList<>(scores.subList(left, mid + 1));
+        List<Score> rightList = new ArrayList<>(scores.subList(mid + 1, right + 1));
+        
+        int i = 0, j = 0, k = left;
+        
+        while (i < leftList.size() && j < rightList.size()) {
+            if (leftList.get(i).compareTo(rightList.get(j)) <= 0) {
+                scores.set(k++, leftList.get(i++));
+            } else {
+                scores.set(k++, rightList.get(j++));
+            }
+        }
+        
+        while (i < leftList.size()) {
+            scores.set(k++, leftList.get(i++));
+        }
+        
+        while (j < rightList.size()) {
+            scores.set(k++, rightList.get(j++));
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package games.dungeon_puzzle;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps everything written to it, for tests and for tools that inspect a
+ * session's output.
+ */
+public class MemorySink implements OutputSink {
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private int writes;
+
+    @Override
+    public void write(byte[] data, int offset, int length) {
+        bytes.write(data, offset, length);
+        writes++;
+    }
+
+    public byte[] toByteArray() {
+        return bytes.toByteArray();
+    }
+
+    public int size() {
+        return bytes.size();
+    }
+
+    // How many turns were flushed here
+    public int getWrites() {
+        return writes;
+    }
+
+    public void reset() {
+        bytes.reset();
+        writes = 0;
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
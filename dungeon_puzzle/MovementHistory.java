@@ -1,58 +1,200 @@
 package games.dungeon_puzzle;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The rooms a player has stood in, oldest to newest, with a cursor at the
+ * current room. Kept as a ring buffer of room ids, so a session's history
+ * never grows past its capacity; once full, each new move forgets the
+ * oldest room. The buffer starts small and doubles up to the capacity as
+ * the player moves, so a short session never pays for a long one.
+ *
+ * Positions count moves since the start and only ever grow; a position's
+ * slot is position % the buffer's length. For each retained room the history knows
+ * its latest position, and each slot remembers the position the same room
+ * held before it, so jumping back to a room is a single lookup and
+ * forgetting a position just restores the one before it.
+ */
 public class MovementHistory {
-    private class Node {
-        Room room;
-        Node prev, next;
-        
-        Node(Room room) {
-            this.room = room;
-        }
-    }
-    
-    private Node current;
-    private int size;
-    
+    public static final int DEFAULT_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 20;
+    private static final int INITIAL_LENGTH = 16;
+
+    private static final long NONE = -1;
+
+    private final int capacity;
+    private int[] rooms;
+    private long[] previousOccurrence;
+    private final IntLongHashMap latestPosition;
+    private long first;
+    private long last = -1;
+    private long cursor = -1;
+
     public MovementHistory() {
-        this.current = null;
-        this.size = 0;
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MovementHistory(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2");
+        }
+        this.capacity = capacity;
+        rooms = new int[Math.min(capacity, INITIAL_LENGTH)];
+        previousOccurrence = new long[rooms.length];
+        latestPosition = new IntLongHashMap(rooms.length);
+    }
+
+    /**
+     * Records arriving in a room. Anything ahead of the cursor, left there
+     * by going back, is dropped first.
+     */
+    public void addMove(int roomId) {
+        while (last > cursor) {
+            forget(last);
+            last--;
+        }
+        if (last - first + 1 == rooms.length) {
+            if (rooms.length < capacity) {
+                grow();
+            } else {
+                forget(first);
+                first++;
+            }
+        }
+        last++;
+        int slot = slot(last);
+        rooms[slot] = roomId;
+        previousOccurrence[slot] = latestPosition.get(roomId, NONE);
+        latestPosition.put(roomId, last);
+        cursor = last;
     }
-    
-    public void addMove(Room room) {
-        Node newNode = new Node(room);
-        if (current != null) {
-            newNode.prev = current;
-            current.next = newNode;
+
+    // Doubles the buffer, up to the capacity, moving each held position to its new slot
+    private void grow() {
+        int[] oldRooms = rooms;
+        long[] oldPrevious = previousOccurrence;
+        int length = (int) Math.min(capacity, 2L * rooms.length);
+        rooms = new int[length];
+        previousOccurrence = new long[length];
+        for (long position = first; position <= last; position++) {
+            int from = (int) (position % oldRooms.length);
+            rooms[slot(position)] = oldRooms[from];
+            previousOccurrence[slot(position)] = oldPrevious[from];
+        }
+    }
+
+    // Undoes the bookkeeping for a position that is about to disappear
+    private void forget(long position) {
+        int roomId = rooms[slot(position)];
+        long previous = previousOccurrence[slot(position)];
+        if (latestPosition.get(roomId, NONE) != position) {
+            return; // a later visit still holds the room's entry
+        }
+        if (previous >= first) {
+            latestPosition.put(roomId, previous);
+        } else {
+            latestPosition.remove(roomId);
         }
-        current = newNode;
-        size++;
     }
-    
-    public Room goBack() {
-        if (current != null && current.prev != null) {
-            current = current.prev;
-            return current.room;
+
+    public int goBack() {
+        return goBack(1);
+    }
+
+    /**
+     * Moves the cursor up to steps rooms back and returns the room there,
+     * or -1 if there is nowhere to go back to.
+     */
+    public int goBack(int steps) {
+        if (steps <= 0 || !canGoBack()) {
+            return -1;
+        }
+        cursor = Math.max(first, cursor - steps);
+        return rooms[slot(cursor)];
+    }
+
+    public int goForward() {
+        return goForward(1);
+    }
+
+    public int goForward(int steps) {
+        if (steps <= 0 || !canGoForward()) {
+            return -1;
         }
-        return null;
+        cursor = Math.min(last, cursor + steps);
+        return rooms[slot(cursor)];
     }
-    
-    public Room goForward() {
-        if (current != null && current.next != null) {
-            current = current.next;
-            return current.room;
+
+    /**
+     * Moves the cursor to the latest visit to this room still in the
+     * history, back or forward. Returns false if the room isn't there.
+     */
+    public boolean returnTo(int roomId) {
+        long position = latestPosition.get(roomId, NONE);
+        if (position == NONE) {
+            return false;
         }
-        return null;
+        cursor = position;
+        return true;
     }
-    
+
+    public boolean contains(int roomId) {
+        return latestPosition.containsKey(roomId);
+    }
+
+    // The room under the cursor, or -1 before the first move
+    public int current() {
+        return cursor >= 0 ? rooms[slot(cursor)] : -1;
+    }
+
     public boolean canGoBack() {
-        return current != null && current.prev != null;
+        return cursor > first;
     }
-    
+
     public boolean canGoForward() {
-        return current != null && current.next != null;
+        return cursor < last;
     }
-    
+
+    // Rooms currently held, at most the capacity
     public int size() {
-        return size;
+        return (int) (last - first + 1);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Capacity, the held rooms oldest first, then the cursor's distance from the newest
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(size());
+        for (long position = first; position <= last; position++) {
+            out.writeInt(rooms[slot(position)]);
+        }
+        out.writeInt((int) (last - cursor));
+    }
+
+    static MovementHistory readFrom(DataInput in) throws IOException {
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity < 2 || capacity > MAX_CAPACITY || size < 0 || size > capacity) {
+            throw new IOException("Corrupt movement history");
+        }
+        MovementHistory history = new MovementHistory(capacity);
+        for (int i = 0; i < size; i++) {
+            history.addMove(in.readInt());
+        }
+        int ahead = in.readInt();
+        if (ahead < 0 || ahead > Math.max(0, size - 1)) {
+            throw new IOException("Corrupt movement history");
+        }
+        history.cursor = history.last - ahead;
+        return history;
+    }
+
+    private int slot(long position) {
+        return (int) (position % rooms.length);
     }
-} 
\ No newline at end of file
+}
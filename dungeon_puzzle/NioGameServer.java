@@ -0,0 +1,302 @@
+package games.dungeon_puzzle;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Selector-based front end: a handful of event-loop threads own every
+ * connection. Each loop reads bytes into the session's direct buffer,
+ * feeds complete lines to Game.step, and writes the rendered output from
+ * the session's outbound direct buffer. No thread ever blocks on a
+ * player, so connections are bounded by memory, not threads. Time limits
+ * fire from a shared timing wheel and run on the session's own loop.
+ *
+ * A client that sends commands but doesn't read the output can't make the
+ * server buffer without limit. Once HIGH_WATER_BYTES of output are
+ * waiting, the loop stops stepping the client's lines and stops reading
+ * from it. It carries on once the client has read enough to bring the
+ * backlog back under the mark.
+ */
+public class NioGameServer implements Closeable {
+    private static final int DEFAULT_PORT = 4001;
+    private static final int INBOUND_BYTES = 256;
+    private static final int OUTBOUND_BYTES = 1024;
+    private static final int MAX_LINE_BYTES = 1024;
+    private static final int HIGH_WATER_BYTES = 16 * 1024;
+
+    private final ServerSocketChannel serverChannel;
+    private final EventLoop[] loops;
+    private final ScoreManager scoreManager;
+    private final AtomicInteger activeSessions;
+    private final TimingWheel timers;
+    private volatile boolean running;
+
+    public NioGameServer(int port, int loopCount, ScoreManager scoreManager) throws IOException {
+        this.serverChannel = ServerSocketChannel.open();
+        this.serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.scoreManager = scoreManager;
+        this.activeSessions = new AtomicInteger();
+        this.timers = TimingWheel.start("nio-game-timers");
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+        }
+    }
+
+    /**
+     * Starts the event loops and accepts connections on the calling thread,
+     * handing them to the loops round-robin.
+     */
+    public void serve() {
+        running = true;
+        for (EventLoop loop : loops) {
+            loop.thread.start();
+        }
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel channel = serverChannel.accept();
+                channel.configureBlocking(false);
+                loops[next].register(channel);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) serverChannel.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        serverChannel.close();
+        for (EventLoop loop : loops) {
+            loop.selector.close();
+        }
+        timers.close();
+    }
+
+    private static final class Session {
+        final SocketChannel channel;
+        final ByteBuffer inbound;
+        final ByteBufferOutputStream outbound;
+        final Game game;
+        // Complete lines are waiting in inbound until the client reads its output
+        boolean backlogged;
+
+        Session(SocketChannel channel, ScoreManager scoreManager) {
+            this.channel = channel;
+            this.inbound = ByteBuffer.allocateDirect(INBOUND_BYTES);
+            this.outbound = new ByteBufferOutputStream(OUTBOUND_BYTES);
+            this.game = new Game(outbound, scoreManager);
+        }
+    }
+
+    private final class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Queue<SocketChannel> pending;
+        final Queue<Runnable> tasks;
+        // Shared by every session on this loop; lines are decoded one at a time
+        final byte[] line;
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "nio-game-loop-" + index);
+            this.pending = new ConcurrentLinkedQueue<>();
+            this.tasks = new ConcurrentLinkedQueue<>();
+            this.line = new byte[MAX_LINE_BYTES];
+        }
+
+        void register(SocketChannel channel) {
+            pending.add(channel);
+            selector.wakeup();
+        }
+
+        // Runs task on this loop's thread at its next wakeup
+        void execute(Runnable task) {
+            tasks.add(task);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select();
+                    registerPending();
+                    runTasks();
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Session session = (Session) key.attachment();
+                        try {
+                            if (key.isValid() && key.isReadable()) {
+                                read(key, session);
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                write(key, session);
+                            }
+                        } catch (IOException e) {
+                            closeSession(key, session);
+                        }
+                    }
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // Server is shutting down
+            }
+        }
+
+        private void registerPending() {
+            SocketChannel channel;
+            while ((channel = pending.poll()) != null) {
+                try {
+                    Session session = new Session(channel, scoreManager);
+                    SelectionKey key = channel.register(selector, SelectionKey.OP_READ, session);
+                    activeSessions.incrementAndGet();
+                    GameMetrics.GLOBAL.sessionOpened();
+                    session.game.start();
+                    session.game.armTimers(timers, task -> execute(() -> {
+                        if (key.isValid()) {
+                            task.run();
+                            try {
+                                write(key, session);
+                            } catch (IOException e) {
+                                closeSession(key, session);
+                            }
+                        }
+                    }));
+                    write(key, session);
+                } catch (IOException e) {
+                    try {
+                        channel.close();
+                    } catch (IOException ignored) {
+                        // Nothing left to clean up
+                    }
+                }
+            }
+        }
+
+        private void runTasks() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        private void read(SelectionKey key, Session session) throws IOException {
+            if (session.channel.read(session.inbound) < 0) {
+                closeSession(key, session);
+                return;
+            }
+            handleInput(key, session);
+        }
+
+        // Steps the game through each complete line, stopping while the output backlog is over the mark
+        private void handleInput(SelectionKey key, Session session) throws IOException {
+            ByteBuffer inbound = session.inbound;
+            inbound.flip();
+            int start = inbound.position();
+            session.backlogged = false;
+            for (int i = start; i < inbound.limit() && session.game.isActive(); i++) {
+                if (inbound.get(i) == '\n') {
+                    if (session.outbound.buffer().position() >= HIGH_WATER_BYTES) {
+                        session.backlogged = true;
+                        break;
+                    }
+                    session.game.step(decodeLine(inbound, start, i));
+                    start = i + 1;
+                }
+            }
+            // A full buffer without a newline is treated as one line
+            if (start == 0 && inbound.limit() == inbound.capacity() && session.game.isActive()
+                    && !session.backlogged) {
+                session.game.step(decodeLine(inbound, 0, inbound.limit()));
+                start = inbound.limit();
+            }
+            inbound.position(start);
+            inbound.compact();
+            write(key, session);
+        }
+
+        private String decodeLine(ByteBuffer inbound, int start, int end) {
+            if (end > start && inbound.get(end - 1) == '\r') {
+                end--;
+            }
+            int length = Math.min(end - start, line.length);
+            inbound.get(start, line, 0, length);
+            return new String(line, 0, length, StandardCharsets.UTF_8);
+        }
+
+        private void write(SelectionKey key, Session session) throws IOException {
+            ByteBuffer outbound = session.outbound.buffer();
+            outbound.flip();
+            session.channel.write(outbound);
+            boolean drained = !outbound.hasRemaining();
+            outbound.compact();
+            boolean underMark = outbound.position() < HIGH_WATER_BYTES;
+            if (drained && !session.game.isActive()) {
+                closeSession(key, session);
+            } else if (session.backlogged && underMark) {
+                // Picks up the lines left waiting; ends by writing again
+                handleInput(key, session);
+            } else if (drained) {
+                key.interestOps(SelectionKey.OP_READ);
+            } else {
+                // Keep reading only while the client is keeping up
+                key.interestOps(underMark && !session.backlogged
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_WRITE);
+            }
+        }
+
+        private void closeSession(SelectionKey key, Session session) {
+            if (!key.isValid()) {
+                return;
+            }
+            key.cancel();
+            session.game.disarmTimers();
+            activeSessions.decrementAndGet();
+            GameMetrics.GLOBAL.sessionClosed();
+            try {
+                session.channel.close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int loops = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        GameMetrics.registerMBeans();
+        try (NioGameServer server = new NioGameServer(port, loops, new ScoreManager())) {
+            System.out.println("Dungeon Puzzler NIO server listening on localhost:" + server.getPort()
+                + " with " + loops + " event loops");
+            server.serve();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package games.dungeon_puzzle;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Where a session's rendered output ends up. A TurnRenderer hands over a
+ * whole turn in one write, so a sink never sees partial turns.
+ */
+public interface OutputSink {
+    // Discards everything; for simulations and replays nobody watches
+    OutputSink NULL = (bytes, offset, length) -> { };
+
+    void write(byte[] bytes, int offset, int length) throws IOException;
+
+    // Straight to stdout, skipping System.out's locking and its own buffer
+    static OutputSink console() {
+        return of(new FileOutputStream(FileDescriptor.out));
+    }
+
+    // A stream or socket; flushed after every turn
+    static OutputSink of(OutputStream stream) {
+        return (bytes, offset, length) -> {
+            stream.write(bytes, offset, length);
+            stream.flush();
+        };
+    }
+}
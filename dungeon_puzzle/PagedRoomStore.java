@@ -0,0 +1,246 @@
+package games.dungeon_puzzle;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps a bounded LRU working set of a generated dungeon in memory and
+ * pages the rest out to a local file. A room evicted with changed items
+ * is written to the page file; an untouched one is just dropped, because
+ * the generator (or its last page) can rebuild it exactly. A miss reads
+ * the room's page if it has one and otherwise regenerates it.
+ *
+ * An attached ItemIndex only holds the resident rooms' items: eviction
+ * takes a room's entries out and loading puts them back, so the index
+ * stays as bounded as the working set. Searches and item routes see the
+ * resident rooms and the inventory.
+ *
+ * Page records are appended: length (int), id (int), name, description,
+ * one exit id per Direction, then the items as catalog ids. The page
+ * file only lives as long as the process, so ids are stable. A re-paged
+ * room gets a new record and the old one is left behind.
+ */
+public class PagedRoomStore implements RoomStore, Closeable {
+    // Rough heap cost of one resident room with a few items
+    static final int APPROX_ROOM_BYTES = 768;
+    private static final int MIN_RESIDENT_ROOMS = 2;
+
+    private final DungeonGenerator source;
+    private final int maxResidentRooms;
+    private final LinkedHashMap<Integer, Room> resident;
+    private final FileChannel pageFile;
+    private final File pageFilePath;
+    private final IntLongHashMap pageOffsets;
+    private long pageFileEnd;
+    private ItemIndex index;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long pageOuts;
+    private long pageIns;
+
+    public PagedRoomStore(DungeonGenerator source, File pageFile, int maxResidentRooms) throws IOException {
+        this.source = source;
+        this.maxResidentRooms = Math.max(MIN_RESIDENT_ROOMS, maxResidentRooms);
+        this.resident = new LinkedHashMap<Integer, Room>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Room> eldest) {
+                if (size() > PagedRoomStore.this.maxResidentRooms) {
+                    evict(eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.pageFilePath = pageFile;
+        this.pageFile = FileChannel.open(pageFile.toPath(), StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.pageOffsets = new IntLongHashMap(1024);
+    }
+
+    public static PagedRoomStore withMemoryBudget(DungeonGenerator source, File pageFile,
+                                                  long budgetBytes) throws IOException {
+        return new PagedRoomStore(source, pageFile, (int) Math.min(Integer.MAX_VALUE, budgetBytes / APPROX_ROOM_BYTES));
+    }
+
+    @Override
+    public Room getRoom(int id) {
+        if (id < 0 || id >= source.size()) {
+            return null;
+        }
+        Room room = resident.get(id);
+        if (room != null) {
+            hits++;
+            return room;
+        }
+        misses++;
+        long offset = pageOffsets.get(id, -1);
+        if (offset >= 0) {
+            room = readPage(offset);
+            pageIns++;
+        } else {
+            room = source.generate(id);
+        }
+        room.markClean();
+        room.setStore(this);
+        if (index != null) {
+            room.attachIndex(index);
+        }
+        resident.put(id, room);
+        return room;
+    }
+
+    private void evict(Room room) {
+        evictions++;
+        room.detachIndex();
+        if (room.isModified()) {
+            writePage(room);
+            room.markClean();
+            pageOuts++;
+        }
+    }
+
+    private void writePage(Room room) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            DataOutputStream data = new DataOutputStream(bytes);
+            data.writeInt(0);
+            data.writeInt(room.getId());
+            data.writeUTF(room.getName());
+            data.writeUTF(room.getDescription());
+            for (Direction direction : Direction.all()) {
+                data.writeInt(room.getExitId(direction));
+            }
+            data.writeShort(room.getItems().size());
+            for (Item item : room.getItems()) {
+                data.writeInt(item.getId());
+            }
+            ByteBuffer record = ByteBuffer.wrap(bytes.toByteArray());
+            record.putInt(0, record.remaining() - 4);
+
+            long offset = pageFileEnd;
+            while (record.hasRemaining()) {
+                pageFileEnd += pageFile.write(record, pageFileEnd);
+            }
+            pageOffsets.put(room.getId(), offset);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not page out room " + room.getId(), e);
+        }
+    }
+
+    private Room readPage(long offset) {
+        try {
+            ByteBuffer header = ByteBuffer.allocate(4);
+            readFully(header, offset);
+            ByteBuffer record = ByteBuffer.allocate(header.getInt(0));
+            readFully(record, offset + 4);
+
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(record.array()));
+            Room room = new Room(data.readInt(), data.readUTF(), data.readUTF());
+            for (Direction direction : Direction.all()) {
+                int exit = data.readInt();
+                if (exit >= 0) {
+                    room.addExit(direction, exit);
+                }
+            }
+            int itemCount = data.readShort();
+            for (int i = 0; i < itemCount; i++) {
+                room.addItem(ItemCatalog.get(data.readInt()));
+            }
+            return room;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not page in room at " + offset, e);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long offset) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = pageFile.read(buffer, offset + buffer.position());
+            if (read < 0) {
+                throw new IOException("Truncated page file");
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return source.size();
+    }
+
+    @Override
+    public int getStartRoomId() {
+        return source.getStartRoomId();
+    }
+
+    @Override
+    public int getExitId(int roomId, Direction direction) {
+        return source.getExitId(roomId, direction);
+    }
+
+    @Override
+    public int estimateDistance(int fromId, int toId) {
+        return source.estimateDistance(fromId, toId);
+    }
+
+    @Override
+    public int findRoom(String name) {
+        return source.findRoom(name);
+    }
+
+    // Paged-out rooms plus resident rooms changed since they were loaded
+    @Override
+    public int[] getChangedRoomIds() {
+        int[] paged = pageOffsets.keys();
+        int[] ids = Arrays.copyOf(paged, paged.length + resident.size());
+        int count = paged.length;
+        for (Room room : resident.values()) {
+            if (room.isModified() && !pageOffsets.containsKey(room.getId())) {
+                ids[count++] = room.getId();
+            }
+        }
+        return Arrays.copyOf(ids, count);
+    }
+
+    @Override
+    public void attachIndex(ItemIndex index) {
+        this.index = index;
+        for (Room room : resident.values()) {
+            room.attachIndex(index);
+        }
+    }
+
+    public long getHits() { return hits; }
+    public long getMisses() { return misses; }
+    public long getEvictions() { return evictions; }
+    public long getPageOuts() { return pageOuts; }
+    public long getPageIns() { return pageIns; }
+    public int getResidentCount() { return resident.size(); }
+    public int getMaxResidentRooms() { return maxResidentRooms; }
+    public int getPagedRoomCount() { return pageOffsets.size(); }
+
+    @Override
+    public String toString() {
+        return String.format("Rooms resident: %d/%d  Hits: %d  Misses: %d  Evictions: %d  Page outs: %d  Page ins: %d",
+            resident.size(), maxResidentRooms, hits, misses, evictions, pageOuts, pageIns);
+    }
+
+    // The page file is scratch space for this store only
+    @Override
+    public void close() throws IOException {
+        pageFile.close();
+        pageFilePath.delete();
+    }
+}
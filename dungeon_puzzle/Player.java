@@ -1,30 +1,31 @@
 package games.dungeon_puzzle;
 
-import java.util.Map;
-import java.util.HashMap;
+import java.util.SplittableRandom;
 
 public class Player {
     private int health;
     private int maxHealth;
     private int attackPower;
-    private Map<String, Item> inventory;
+    private final Inventory inventory = new Inventory();
 
     public Player() {
         this.maxHealth = 100;
         this.health = maxHealth;
         this.attackPower = 15;
-        this.inventory = new HashMap<>();
     }
 
-    public int attack() {
-        // Base attack + random bonus
-        return attackPower + (int)(Math.random() * 10);
+    public int attack(SplittableRandom random) {
+        return CombatRules.playerDamage(attackPower, random);
     }
 
     public void heal(int amount) {
         health = Math.min(health + amount, maxHealth);
     }
 
+    public void drinkPotion() {
+        health = CombatRules.healed(health, maxHealth);
+    }
+
     public void takeDamage(int damage) {
         health -= damage;
     }
@@ -37,11 +38,21 @@ public class Player {
         return health;
     }
 
-    public void addItem(Item item) {
-        inventory.put(item.getName(), item);
+    public int getMaxHealth() {
+        return maxHealth;
+    }
+
+    public int getAttackPower() {
+        return attackPower;
+    }
+
+    // For restoring a checkpoint
+    void setHealth(int health) {
+        this.health = Math.min(health, maxHealth);
     }
 
-    public Map<String, Item> getInventory() {
+    // Change it through Game, which keeps the item index and requirements in step
+    public Inventory getInventory() {
         return inventory;
     }
 } 
\ No newline at end of file
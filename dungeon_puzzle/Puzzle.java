@@ -1,25 +1,78 @@
 package games.dungeon_puzzle;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A puzzle and what it takes to attempt it: items worth at least the
+ * required value between them, at least one of which is a key item.
+ * An item is a key item if its name contains one of the key names, so
+ * "spell_scroll" counts for "scroll". The required items are the intended
+ * set, which the player has to be holding at the end to win.
+ */
 public class Puzzle implements Comparable<Puzzle> {
     private String type;
     private int difficulty;
     private String question;
     private String answer;
+    private final int requiredValue;
+    private final Set<String> keyItems;
+    private final String[] keyNames;
+    // Answers of isKeyItem(Item) by catalog id: 0 not yet asked, 1 no, 2 yes.
+    // Puzzles belong to one session, so this is only touched by its thread
+    private byte[] keyById = new byte[0];
+    private final List<Item> requiredItems;
 
     public Puzzle(String type, int difficulty, String question, String answer) {
+        this(type, difficulty, question, answer, 0, Collections.emptySet(), Collections.emptyList());
+    }
+
+    public Puzzle(String type, int difficulty, String question, String answer,
+                  int requiredValue, Set<String> keyItems, List<Item> requiredItems) {
         this.type = type;
         this.difficulty = difficulty;
         this.question = question;
         this.answer = answer;
+        this.requiredValue = requiredValue;
+        this.keyItems = Set.copyOf(keyItems);
+        this.keyNames = this.keyItems.toArray(new String[0]);
+        this.requiredItems = List.copyOf(requiredItems);
     }
 
     public String getType() { return type; }
     public int getDifficulty() { return difficulty; }
     public String getQuestion() { return question; }
     public String getAnswer() { return answer; }
+    public int getRequiredValue() { return requiredValue; }
+    public Set<String> getKeyItems() { return keyItems; }
+    public List<Item> getRequiredItems() { return requiredItems; }
+
+    // With no key items, any items worth enough will do
+    public boolean isKeyItem(String itemName) {
+        for (String keyName : keyNames) {
+            if (itemName.contains(keyName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The same test for a catalog item, worked out once per item
+    boolean isKeyItem(Item item) {
+        int id = item.getId();
+        if (id >= keyById.length) {
+            keyById = Arrays.copyOf(keyById, Math.max(id + 1, 2 * keyById.length));
+        }
+        if (keyById[id] == 0) {
+            keyById[id] = (byte) (isKeyItem(item.getName()) ? 2 : 1);
+        }
+        return keyById[id] == 2;
+    }
 
     @Override
     public int compareTo(Puzzle other) {
         return Integer.compare(this.difficulty, other.difficulty);
     }
-} 
\ No newline at end of file
+}
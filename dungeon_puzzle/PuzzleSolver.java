@@ -0,0 +1,329 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Finds the cheapest set of items that meets a puzzle's requirement: a
+ * total value of at least the required value, including at least one key
+ * item when the puzzle names any. Cheapest means the smallest total
+ * value; among equal totals, larger items are preferred.
+ *
+ * Items worth at least the required value can only ever be used alone or
+ * with one key item, so only the cheapest of them matter. The rest are
+ * grouped by (value, key) and each group is split into pieces of 1, 2,
+ * 4, ... items, the usual bounded-knapsack reduction. A subset-sum bitset
+ * over totals below twice the required value is then built in two
+ * layers, without and with a key item, one shift-or per piece. Each
+ * total remembers the piece that first reached it, so the chosen items
+ * are read back in O(required value). Scratch arrays are reused; one
+ * solver per session, not thread-safe.
+ */
+final class PuzzleSolver {
+    private static final int NONE = -1;
+
+    static final class Solution {
+        private final List<Item> items;
+        private final int totalValue;
+
+        Solution(List<Item> items, int totalValue) {
+            this.items = items;
+            this.totalValue = totalValue;
+        }
+
+        // Most valuable first
+        public List<Item> getItems() {
+            return items;
+        }
+
+        public int getTotalValue() {
+            return totalValue;
+        }
+    }
+
+    // Per (value, key) group of items worth less than the required value
+    private int[] groupSizes = new int[0];
+    private int[] groupCursors = new int[0];
+    private Item[] grouped = new Item[0];
+    // The small items and their groups in inventory order, so names are read once
+    private Item[] smallItems = new Item[16];
+    private int[] smallGroups = new int[16];
+
+    private int[] pieceGroup = new int[64];
+    private int[] pieceCount = new int[64];
+    private int pieceTotal;
+
+    // Totals reachable without a key item (A) and with one (B)
+    private long[] reachA = new long[0];
+    private long[] reachB = new long[0];
+    private int[] pieceA = new int[0];
+    private int[] pieceB = new int[0];
+    private boolean[] fromA = new boolean[0];
+
+    /**
+     * Returns the cheapest qualifying items from the inventory, or null
+     * if no combination qualifies. Items with negative values are never
+     * used.
+     */
+    Solution solve(Puzzle puzzle, Collection<Item> inventory) {
+        int target = puzzle.getRequiredValue();
+        boolean needsKey = !puzzle.getKeyItems().isEmpty();
+        int groups = Math.max(target, 0) * 2;
+        if (groupSizes.length < groups) {
+            groupSizes = new int[groups];
+            groupCursors = new int[groups];
+        }
+        Arrays.fill(groupSizes, 0, groups, 0);
+
+        Item cheapestKey = null;
+        Item cheapestLargeKey = null;
+        Item cheapestLarge = null;
+        int small = 0;
+        for (Item item : inventory) {
+            int value = item.getValue();
+            if (value < 0) {
+                continue;
+            }
+            boolean key = needsKey && puzzle.isKeyItem(item);
+            if (key && (cheapestKey == null || value < cheapestKey.getValue())) {
+                cheapestKey = item;
+            }
+            if (value >= target) {
+                if (key && (cheapestLargeKey == null || value < cheapestLargeKey.getValue())) {
+                    cheapestLargeKey = item;
+                } else if (!key && (cheapestLarge == null || value < cheapestLarge.getValue())) {
+                    cheapestLarge = item;
+                }
+            } else {
+                if (small == smallItems.length) {
+                    smallItems = Arrays.copyOf(smallItems, small * 2);
+                    smallGroups = Arrays.copyOf(smallGroups, small * 2);
+                }
+                int group = group(value, key);
+                smallItems[small] = item;
+                smallGroups[small] = group;
+                groupSizes[group]++;
+                small++;
+            }
+        }
+        if (target <= 0) {
+            if (!needsKey) {
+                return new Solution(Collections.emptyList(), 0);
+            }
+            return cheapestKey != null ? solution(cheapestKey) : null;
+        }
+
+        // Candidates built around one large item
+        Solution best = null;
+        if (cheapestLargeKey != null) {
+            best = solution(cheapestLargeKey);
+        }
+        if (cheapestLarge != null && (!needsKey || cheapestKey != null)) {
+            best = cheaper(best, needsKey ? solution(cheapestLarge, cheapestKey) : solution(cheapestLarge));
+        }
+        if (small > 0) {
+            best = cheaper(best, solveSmall(target, needsKey, groups, small));
+            Arrays.fill(smallItems, 0, small, null);
+        }
+        return best;
+    }
+
+    private Solution solveSmall(int target, boolean needsKey, int groups, int small) {
+        // A set that stays at or above the target without one of its items
+        // isn't cheapest, so no cheapest set of small items reaches 2 x target
+        int bits = 2 * target;
+        int words = (bits + 63) >>> 6;
+        splitIntoPieces(target, groups);
+        if (reachA.length < words) {
+            reachA = new long[words];
+            reachB = new long[words];
+        }
+        if (pieceA.length < bits) {
+            pieceA = new int[bits];
+            pieceB = new int[bits];
+            fromA = new boolean[bits];
+        }
+        Arrays.fill(reachA, 0, words, 0);
+        Arrays.fill(reachB, 0, words, 0);
+        if (needsKey) {
+            reachA[0] = 1;
+        } else {
+            reachB[0] = 1;
+        }
+
+        for (int piece = 0; piece < pieceTotal; piece++) {
+            int value = pieceGroup[piece] >>> 1;
+            int shift = value * pieceCount[piece];
+            if (shift >= bits) {
+                continue;
+            }
+            if ((pieceGroup[piece] & 1) == 1) {
+                addKeyPiece(piece, shift, words);
+            } else {
+                addPiece(reachA, pieceA, piece, shift, words, false);
+                addPiece(reachB, pieceB, piece, shift, words, true);
+            }
+        }
+
+        int total = NONE;
+        for (int sum = target; sum < bits; sum++) {
+            if (test(reachB, sum)) {
+                total = sum;
+                break;
+            }
+        }
+        if (total == NONE) {
+            return null;
+        }
+        groupItems(groups, small);
+        Solution solution = readBack(total, needsKey);
+        Arrays.fill(grouped, 0, small, null);
+        return solution;
+    }
+
+    // Both layers move up by shift; a key piece also lifts A into B
+    private void addKeyPiece(int piece, int shift, int words) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int i = words - 1; i >= wordShift; i--) {
+            long viaB = shifted(reachB, i, wordShift, bitShift);
+            long viaA = shifted(reachA, i, wordShift, bitShift);
+            long added = (viaB | viaA) & ~reachB[i];
+            while (added != 0) {
+                int sum = (i << 6) + Long.numberOfTrailingZeros(added);
+                if (sum < pieceB.length) {
+                    pieceB[sum] = piece;
+                    fromA[sum] = (viaB & Long.lowestOneBit(added)) == 0;
+                }
+                added &= added - 1;
+            }
+            reachB[i] |= viaB | viaA;
+        }
+    }
+
+    private void addPiece(long[] reach, int[] pieces, int piece, int shift, int words, boolean layerB) {
+        int wordShift = shift >>> 6;
+        int bitShift = shift & 63;
+        for (int i = words - 1; i >= wordShift; i--) {
+            long moved = shifted(reach, i, wordShift, bitShift);
+            long added = moved & ~reach[i];
+            while (added != 0) {
+                int sum = (i << 6) + Long.numberOfTrailingZeros(added);
+                if (sum < pieces.length) {
+                    pieces[sum] = piece;
+                    if (layerB) {
+                        fromA[sum] = false;
+                    }
+                }
+                added &= added - 1;
+            }
+            reach[i] |= moved;
+        }
+    }
+
+    private static long shifted(long[] reach, int word, int wordShift, int bitShift) {
+        int source = word - wordShift;
+        long value = reach[source] << bitShift;
+        if (bitShift != 0 && source > 0) {
+            value |= reach[source - 1] >>> (64 - bitShift);
+        }
+        return value;
+    }
+
+    private static boolean test(long[] reach, int sum) {
+        return (reach[sum >>> 6] & (1L << sum)) != 0;
+    }
+
+    // Pieces of 1, 2, 4, ... items per group, never more copies than can help
+    private void splitIntoPieces(int target, int groups) {
+        pieceTotal = 0;
+        // Most valuable first: a total is credited to the first piece that
+        // reaches it, so ties lean towards fewer, larger items
+        for (int group = groups - 1; group >= 0; group--) {
+            int value = group >>> 1;
+            boolean key = (group & 1) == 1;
+            int useful = value == 0 ? (key ? 1 : 0) : (2 * target - 1) / value;
+            int remaining = Math.min(groupSizes[group], useful);
+            for (int size = 1; remaining > 0; size <<= 1) {
+                int count = Math.min(size, remaining);
+                if (pieceTotal == pieceGroup.length) {
+                    pieceGroup = Arrays.copyOf(pieceGroup, pieceTotal * 2);
+                    pieceCount = Arrays.copyOf(pieceCount, pieceTotal * 2);
+                }
+                pieceGroup[pieceTotal] = group;
+                pieceCount[pieceTotal] = count;
+                pieceTotal++;
+                remaining -= count;
+            }
+        }
+    }
+
+    // Follows the first-reached pieces back from the total to the empty set
+    private Solution readBack(int total, boolean needsKey) {
+        List<Item> items = new ArrayList<>();
+        int sum = total;
+        boolean inB = true;
+        while (sum > 0 || (inB && needsKey)) {
+            int piece = inB ? pieceB[sum] : pieceA[sum];
+            boolean cameFromA = inB && fromA[sum];
+            int group = pieceGroup[piece];
+            for (int i = 0; i < pieceCount[piece]; i++) {
+                items.add(grouped[groupCursors[group]++]);
+            }
+            sum -= (group >>> 1) * pieceCount[piece];
+            if (cameFromA) {
+                inB = false;
+            }
+        }
+        items.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return new Solution(items, total);
+    }
+
+    // Counting sort of the small items by group, for picking concrete items;
+    // leaves each group's cursor at its first item
+    private void groupItems(int groups, int small) {
+        if (grouped.length < small) {
+            grouped = new Item[smallItems.length];
+        }
+        int start = 0;
+        for (int group = 0; group < groups; group++) {
+            groupCursors[group] = start;
+            start += groupSizes[group];
+        }
+        for (int i = 0; i < small; i++) {
+            grouped[groupCursors[smallGroups[i]]++] = smallItems[i];
+        }
+        for (int group = 0; group < groups; group++) {
+            groupCursors[group] -= groupSizes[group];
+        }
+    }
+
+    private static int group(int value, boolean key) {
+        return value * 2 + (key ? 1 : 0);
+    }
+
+    private static Solution solution(Item... items) {
+        int total = 0;
+        List<Item> list = new ArrayList<>(items.length);
+        for (Item item : items) {
+            total += item.getValue();
+            list.add(item);
+        }
+        list.sort((a, b) -> Integer.compare(b.getValue(), a.getValue()));
+        return new Solution(list, total);
+    }
+
+    private static Solution cheaper(Solution current, Solution candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        if (current == null || candidate.totalValue < current.totalValue
+                || (candidate.totalValue == current.totalValue && candidate.items.size() < current.items.size())) {
+            return candidate;
+        }
+        return current;
+    }
+}
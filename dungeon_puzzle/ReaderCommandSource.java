@@ -0,0 +1,26 @@
+package games.dungeon_puzzle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+public class ReaderCommandSource implements CommandSource {
+    private final BufferedReader reader;
+
+    public ReaderCommandSource(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    public static ReaderCommandSource console() {
+        return new ReaderCommandSource(new BufferedReader(new InputStreamReader(System.in)));
+    }
+
+    @Override
+    public String nextLine() {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps a session's puzzle requirements as counters that move with the
+ * inventory, so readiness and the win check never rescan it.
+ *
+ * A puzzle is ready when the held items are worth its required value
+ * between them and one of them is a key item. Taking every held item is
+ * then always a valid answer, so this is exactly when {@link PuzzleSolver}
+ * finds a solution. Like the solver, it ignores cursed (negative) items.
+ *
+ * Key items match by substring (see {@link Puzzle#isKeyItem}), so what an
+ * item name counts towards is worked out the first time it is held and
+ * kept for the rest of the session.
+ */
+final class RequirementTracker {
+    private static final class Slot {
+        int heldKeys;
+    }
+
+    // What holding one item name counts towards
+    private static final class Watch {
+        boolean required;
+        final List<Slot> keyFor = new ArrayList<>(1);
+    }
+
+    private final List<Puzzle> puzzles = new ArrayList<>();
+    private final Map<String, Slot> slots = new HashMap<>();
+    private final Set<String> requiredNames = new HashSet<>();
+    // Filled in lazily, one per item name seen
+    private final Map<String, Watch> watches = new HashMap<>();
+    private int missingRequired;
+    private int totalValue;
+
+    // Puzzles must be added while the inventory is still empty
+    void addPuzzle(Puzzle puzzle) {
+        puzzles.add(puzzle);
+        slots.put(puzzle.getType(), new Slot());
+        for (Item item : puzzle.getRequiredItems()) {
+            if (requiredNames.add(item.getName())) {
+                missingRequired++;
+            }
+        }
+        watches.clear();
+    }
+
+    private Watch watch(String itemName) {
+        Watch watch = watches.get(itemName);
+        if (watch == null) {
+            watch = new Watch();
+            watch.required = requiredNames.contains(itemName);
+            for (Puzzle puzzle : puzzles) {
+                if (puzzle.isKeyItem(itemName)) {
+                    watch.keyFor.add(slots.get(puzzle.getType()));
+                }
+            }
+            watches.put(itemName, watch);
+        }
+        return watch;
+    }
+
+    // Called per copy, with the number of copies held afterwards
+    void itemAdded(Item item, int held) {
+        totalValue += Math.max(0, item.getValue());
+        if (held == 1) {
+            Watch watch = watch(item.getName());
+            if (watch.required) {
+                missingRequired--;
+            }
+            if (item.getValue() >= 0) {
+                for (Slot slot : watch.keyFor) {
+                    slot.heldKeys++;
+                }
+            }
+        }
+    }
+
+    void itemRemoved(Item item, int held) {
+        totalValue -= Math.max(0, item.getValue());
+        if (held == 0) {
+            Watch watch = watch(item.getName());
+            if (watch.required) {
+                missingRequired++;
+            }
+            if (item.getValue() >= 0) {
+                for (Slot slot : watch.keyFor) {
+                    slot.heldKeys--;
+                }
+            }
+        }
+    }
+
+    // Combined value of every copy held, ignoring cursed items
+    int getTotalValue() {
+        return totalValue;
+    }
+
+    boolean hasAllRequiredItems() {
+        return missingRequired == 0;
+    }
+
+    boolean hasKeyItem(Puzzle puzzle) {
+        if (puzzle.getKeyItems().isEmpty()) {
+            return true;
+        }
+        Slot slot = slots.get(puzzle.getType());
+        return slot != null && slot.heldKeys > 0;
+    }
+
+    boolean isReady(Puzzle puzzle) {
+        return totalValue >= puzzle.getRequiredValue() && hasKeyItem(puzzle);
+    }
+}
@@ -2,33 +2,135 @@ package games.dungeon_puzzle;
 
 import java.util.*;
 
+/**
+ * A room's exits are held by id and its items as a set. The full
+ * description shown by look is rendered once and kept, along with its
+ * UTF-8 bytes, until an exit or the items change. Each change bumps the
+ * room's version, and a cached rendering is only used while its version
+ * matches.
+ */
 public class Room {
+    private int id;
     private String name;
     private String description;
-    private Map<String, Room> exits;
-    private Map<String, Item> items;
+    private final String hint;
+    private int[] exits;
+    private final ItemSet items = new ItemSet();
+    private ItemIndex index;
+    private RoomStore store;
+    private boolean modified;
+    private int version;
+    private String fullDescription;
+    private int describedVersion = -1;
+    private byte[] encodedDescription;
+    private int encodedVersion = -1;
 
-    public Room(String name, String description) {
+    public Room(int id, String name, String description) {
+        this.id = id;
         this.name = name;
         this.description = description;
-        exits = new HashMap<>();
-        items = new HashMap<>();
+        this.hint = hintFor(name);
+        exits = new int[Direction.all().length];
+        Arrays.fill(exits, -1);
+    }
+
+    // Puzzle hints for the rooms that have one
+    private static String hintFor(String name) {
+        switch (name) {
+            case "Laboratory":
+                return "\nAncient runes suggest magical items here might help with rituals...";
+            case "Library":
+                return "\nScattered notes mention combining texts for knowledge...";
+            default:
+                return "";
+        }
     }
 
     public void addExit(String direction, Room room) {
-        exits.put(direction, room);
+        Direction parsed = Direction.parse(direction);
+        if (parsed == null) {
+            throw new IllegalArgumentException("Unknown direction: " + direction);
+        }
+        addExit(parsed, room.getId());
+    }
+
+    public void addExit(Direction direction, int roomId) {
+        exits[direction.ordinal()] = roomId;
+        version++;
     }
 
+    // Neighbours are held by id and looked up in the store, which may
+    // build the room on the spot
     public Room getExit(String direction) {
-        return exits.get(direction);
+        Direction parsed = Direction.parse(direction);
+        if (parsed == null || store == null) {
+            return null;
+        }
+        int roomId = exits[parsed.ordinal()];
+        return roomId >= 0 ? store.getRoom(roomId) : null;
+    }
+
+    public int getExitId(Direction direction) {
+        return exits[direction.ordinal()];
+    }
+
+    void setStore(RoomStore store) {
+        this.store = store;
+    }
+
+    // Whether the items changed since the store last saved or built this room
+    boolean isModified() {
+        return modified;
+    }
+
+    void markClean() {
+        modified = false;
     }
 
+    // A room holds at most one of each item
     public void addItem(Item item) {
-        items.put(item.getName(), item);
+        if (items.addItem(item)) {
+            modified = true;
+            version++;
+            if (index != null) {
+                index.add(item, id);
+            }
+        }
     }
 
     public Item removeItem(String itemName) {
-        return items.remove(itemName);
+        Item item = items.find(itemName);
+        if (item != null) {
+            items.removeItem(item);
+            modified = true;
+            version++;
+            if (index != null) {
+                index.remove(item, id);
+            }
+        }
+        return item;
+    }
+
+    // Registers the room's current items and keeps the index in step from now on
+    public void attachIndex(ItemIndex index) {
+        this.index = index;
+        for (Item item : items) {
+            index.add(item, id);
+        }
+    }
+
+    // Takes the room's items back out of its index and stops updating it
+    void detachIndex() {
+        if (index != null) {
+            for (Item item : items) {
+                index.remove(item, id);
+            }
+            index = null;
+        }
+    }
+
+    public int getId() {
+        return id;
     }
 
     public String getName() {
@@ -39,24 +141,42 @@ public class Room {
         return description;
     }
 
+    // Bumped whenever an exit or the items change
+    public int getVersion() {
+        return version;
+    }
+
     public String getFullDescription() {
-        StringBuilder sb = new StringBuilder(description);
-        
-        // Add puzzle hints based on room
-        if (name.equals("Laboratory")) {
-            sb.append("\nAncient runes suggest magical items here might help with rituals...");
-        } else if (name.equals("Library")) {
-            sb.append("\nScattered notes mention combining texts for knowledge...");
+        if (describedVersion != version) {
+            fullDescription = renderFullDescription();
+            describedVersion = version;
         }
-        
-        if (!exits.isEmpty()) {
-            sb.append("\nExits: ");
-            sb.append(String.join(", ", exits.keySet()));
+        return fullDescription;
+    }
+
+    // The full description as UTF-8, shared until the room next changes; callers must not modify it
+    public byte[] getEncodedDescription() {
+        if (encodedVersion != version) {
+            encodedDescription = TurnRenderer.encode(getFullDescription());
+            encodedVersion = version;
+        }
+        return encodedDescription;
+    }
+
+    private String renderFullDescription() {
+        StringBuilder sb = new StringBuilder(description).append(hint);
+
+        boolean firstExit = true;
+        for (Direction direction : Direction.all()) {
+            if (exits[direction.ordinal()] >= 0) {
+                sb.append(firstExit ? "\nExits: " : ", ").append(direction.getLabel());
+                firstExit = false;
+            }
         }
         
         if (!items.isEmpty()) {
             sb.append("\nItems: ");
-            for (Item item : items.values()) {
+            for (Item item : items) {
                 sb.append("\n  ").append(item.getName()).append(" - ").append(item.getDescription());
             }
         }
@@ -64,7 +184,7 @@ public class Room {
         return sb.toString();
     }
 
-    public Map<String, Item> getItems() {
-        return items;
+    public List<Item> getItems() {
+        return Collections.unmodifiableList(items);
     }
 } 
\ No newline at end of file
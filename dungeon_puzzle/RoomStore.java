@@ -0,0 +1,52 @@
+package games.dungeon_puzzle;
+
+/**
+ * Where a game's rooms live. Rooms refer to their neighbours by id and
+ * resolve them through the store, so a store is free to build rooms on
+ * first use or keep only some of them in memory. Ids are dense, from 0
+ * to size() - 1.
+ */
+public interface RoomStore {
+    /**
+     * Returns the room with this id, materializing it if needed, or null
+     * if there is no such room.
+     */
+    Room getRoom(int id);
+
+    int size();
+
+    int getStartRoomId();
+
+    /**
+     * The neighbour of roomId in this direction, or -1. Stores answer this
+     * without materializing rooms where they can, so graph searches don't
+     * drag the whole dungeon into memory.
+     */
+    int getExitId(int roomId, Direction direction);
+
+    /**
+     * A lower bound on the number of moves between two rooms, used to
+     * steer route searches. Zero is always a safe answer.
+     */
+    default int estimateDistance(int fromId, int toId) {
+        return 0;
+    }
+
+    /**
+     * Returns the id of the room with this name, or -1.
+     */
+    int findRoom(String name);
+
+    /**
+     * Ids of every room whose items may differ from what a fresh store
+     * would build. Restoring just these rooms over a fresh copy of the
+     * store reproduces this one.
+     */
+    int[] getChangedRoomIds();
+
+    /**
+     * Every room handed out from now on, and every room already handed
+     * out, keeps this index up to date.
+     */
+    void attachIndex(ItemIndex index);
+}
@@ -0,0 +1,374 @@
+package games.dungeon_puzzle;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Shortest routes over a world's exits: to a named room, or to the nearest
+ * room holding a given item or any item in a value range.
+ *
+ * Room routes are found with A*, steered by RoomStore.estimateDistance.
+ * Item routes are a breadth-first search outwards from the start that
+ * stops at the first room the ItemIndex places a matching item in, so
+ * only rooms the player's world has materialized count. The graph is read
+ * through getExitId and never materializes rooms.
+ *
+ * Answers are cached per query. The topology never changes, so room routes
+ * stay valid; item routes remember the index version they were computed at
+ * and are recomputed once anything has been taken, dropped or spawned.
+ * Search state lives in pages of 1024 rooms, made the first time a search
+ * reaches one, so a huge generated dungeon only costs memory for the parts
+ * searches have touched. Entries are stamped with a search number, so
+ * nothing is cleared between searches. Not thread-safe.
+ */
+public class RouteService {
+    private static final int CACHE_SIZE = 256;
+    private static final long TOPOLOGY_ONLY = -1;
+    private static final int PAGE_BITS = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    // A page holds a run of each field in turn, so a field's rooms sit side by side
+    private static final int REACHED = 0;
+    private static final int TARGETED = PAGE_SIZE;
+    private static final int COST = 2 * PAGE_SIZE;
+    private static final int PARENT = 3 * PAGE_SIZE;
+
+    public static final class Route {
+        private final int[] rooms;
+        private final Direction[] steps;
+
+        Route(int[] rooms, Direction[] steps) {
+            this.rooms = rooms;
+            this.steps = steps;
+        }
+
+        public int getFrom() {
+            return rooms[0];
+        }
+
+        public int getTarget() {
+            return rooms[rooms.length - 1];
+        }
+
+        // Number of moves; zero when already there
+        public int length() {
+            return steps.length;
+        }
+
+        public Direction getStep(int i) {
+            return steps[i];
+        }
+
+        // The room reached after i moves
+        public int getRoom(int i) {
+            return rooms[i];
+        }
+
+        public Direction firstStep() {
+            return steps.length > 0 ? steps[0] : null;
+        }
+    }
+
+    // Rooms holding a match, shared by every start point until items move
+    private static final class TargetSet {
+        final int[] rooms;
+        final long version;
+
+        TargetSet(int[] rooms, long version) {
+            this.rooms = rooms;
+            this.version = version;
+        }
+    }
+
+    private static final class CachedRoute {
+        final Route route;
+        final long version;
+
+        CachedRoute(Route route, long version) {
+            this.route = route;
+            this.version = version;
+        }
+    }
+
+    private final RoomStore world;
+    private final ItemIndex index;
+    private final Map<String, CachedRoute> cache;
+    private final Map<String, TargetSet> targetSets;
+
+    // Indexed by room id >>> PAGE_BITS; a field is valid where its stamp equals the current search
+    private int[][] pages = new int[0][];
+    private int search;
+
+    // Open set as a binary min-heap of (priority << 32 | room id)
+    private long[] open = new long[64];
+    private int openSize;
+
+    private int wantedId = -1;
+    private int[] found = new int[16];
+    private int targetCount;
+    private final ItemIndex.Visitor targetMarker = this::markTarget;
+
+    private long searches;
+    private long cacheHits;
+
+    public RouteService(RoomStore world, ItemIndex index) {
+        this.world = world;
+        this.index = index;
+        this.cache = new LinkedHashMap<String, CachedRoute>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedRoute> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+        this.targetSets = new LinkedHashMap<String, TargetSet>(CACHE_SIZE, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, TargetSet> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        };
+    }
+
+    /**
+     * Returns the shortest route to the room with this name, or null if
+     * there is no such room or it can't be reached.
+     */
+    public Route routeToRoom(int from, String roomName) {
+        int target = world.findRoom(roomName);
+        return target >= 0 ? routeToRoom(from, target) : null;
+    }
+
+    public Route routeToRoom(int from, int target) {
+        String key = "room:" + from + ":" + target;
+        CachedRoute cached = cache.get(key);
+        if (cached != null) {
+            cacheHits++;
+            return cached.route;
+        }
+        Route route = target < world.size() ? search(from, target) : null;
+        cache.put(key, new CachedRoute(route, TOPOLOGY_ONLY));
+        return route;
+    }
+
+    // The nearest room holding an item with this name, or null if none is known
+    public Route routeToItem(int from, String itemName) {
+        // Every copy of an item shares one catalog value, so only that slice of the index is scanned
+        Item item = ItemCatalog.find(itemName);
+        if (item == null) {
+            return null;
+        }
+        return routeToItems(from, item.getId(), item.getValue(), item.getValue(), "item:" + itemName);
+    }
+
+    // The nearest room holding any item worth minValue to maxValue
+    public Route routeToValueRange(int from, int minValue, int maxValue) {
+        return routeToItems(from, -1, minValue, maxValue, "value:" + minValue + ":" + maxValue);
+    }
+
+    public long getSearches() {
+        return searches;
+    }
+
+    public long getCacheHits() {
+        return cacheHits;
+    }
+
+    private Route routeToItems(int from, int itemId, int minValue, int maxValue, String query) {
+        long version = index.getVersion();
+        String key = query + "@" + from;
+        CachedRoute cached = cache.get(key);
+        if (cached != null && cached.version == version) {
+            cacheHits++;
+            return cached.route;
+        }
+        TargetSet targets = targetSets.get(query);
+        if (targets == null || targets.version != version) {
+            targets = findTargets(itemId, minValue, maxValue, version);
+            targetSets.put(query, targets);
+        }
+        Route route = null;
+        if (targets.rooms.length > 0) {
+            beginSearch();
+            for (int room : targets.rooms) {
+                page(room)[slot(room) + TARGETED] = search;
+            }
+            route = runSearch(from, -1);
+        }
+        cache.put(key, new CachedRoute(route, version));
+        return route;
+    }
+
+    private TargetSet findTargets(int itemId, int minValue, int maxValue, long version) {
+        wantedId = itemId;
+        targetCount = 0;
+        index.forEachInRange(minValue, maxValue, targetMarker);
+        wantedId = -1;
+        return new TargetSet(Arrays.copyOf(found, targetCount), version);
+    }
+
+    // Duplicates are harmless: marking a room twice costs nothing
+    private void markTarget(Item item, int owner) {
+        if (owner != ItemIndex.INVENTORY && (wantedId < 0 || wantedId == item.getId())) {
+            if (targetCount == found.length) {
+                found = Arrays.copyOf(found, targetCount * 2);
+            }
+            found[targetCount++] = owner;
+        }
+    }
+
+    private Route search(int from, int target) {
+        beginSearch();
+        return runSearch(from, target);
+    }
+
+    private void beginSearch() {
+        if (++search == Integer.MAX_VALUE) {
+            for (int[] page : pages) {
+                if (page != null) {
+                    Arrays.fill(page, 0);
+                }
+            }
+            search = 1;
+        }
+        searches++;
+    }
+
+    // The page holding this room's search state, made on first use
+    private int[] page(int room) {
+        int index = room >>> PAGE_BITS;
+        if (index < pages.length) {
+            int[] page = pages[index];
+            if (page != null) {
+                return page;
+            }
+        }
+        return newPage(index);
+    }
+
+    // Kept apart from page() so the common path stays small enough to inline
+    private int[] newPage(int index) {
+        if (index >= pages.length) {
+            pages = Arrays.copyOf(pages, Math.max(index + 1, pages.length * 2));
+        }
+        int[] page = new int[4 * PAGE_SIZE];
+        pages[index] = page;
+        return page;
+    }
+
+    private static int slot(int room) {
+        return room & (PAGE_SIZE - 1);
+    }
+
+    // A target of -1 means any room marked as targeted; the estimate is
+    // then zero and the search is plain breadth-first order
+    private Route runSearch(int from, int target) {
+        if (from < 0 || from >= world.size()) {
+            return null;
+        }
+        openSize = 0;
+        int[] start = page(from);
+        start[slot(from) + REACHED] = search;
+        start[slot(from) + COST] = 0;
+        start[slot(from) + PARENT] = -1;
+        push(estimate(from, target), from);
+        while (openSize > 0) {
+            long entry = pop();
+            int room = (int) entry;
+            int priority = (int) (entry >>> 32);
+            int[] page = page(room);
+            int at = slot(room);
+            if (priority > page[at + COST] + estimate(room, target)) {
+                continue; // superseded by a cheaper entry
+            }
+            if (room == target || (target < 0 && page[at + TARGETED] == search)) {
+                return buildRoute(room);
+            }
+            int nextCost = page[at + COST] + 1;
+            for (Direction direction : Direction.all()) {
+                int next = world.getExitId(room, direction);
+                if (next < 0) {
+                    continue;
+                }
+                int[] nextPage = page(next);
+                int nextAt = slot(next);
+                if (nextPage[nextAt + REACHED] != search || nextCost < nextPage[nextAt + COST]) {
+                    nextPage[nextAt + REACHED] = search;
+                    nextPage[nextAt + COST] = nextCost;
+                    nextPage[nextAt + PARENT] = room;
+                    push(nextCost + estimate(next, target), next);
+                }
+            }
+        }
+        return null;
+    }
+
+    private int estimate(int room, int target) {
+        return target >= 0 ? world.estimateDistance(room, target) : 0;
+    }
+
+    private Route buildRoute(int target) {
+        int length = page(target)[slot(target) + COST];
+        int[] rooms = new int[length + 1];
+        Direction[] steps = new Direction[length];
+        int room = target;
+        for (int i = length; i > 0; i--) {
+            int previous = page(room)[slot(room) + PARENT];
+            rooms[i] = room;
+            steps[i - 1] = directionBetween(previous, room);
+            room = previous;
+        }
+        rooms[0] = room;
+        return new Route(rooms, steps);
+    }
+
+    private Direction directionBetween(int from, int to) {
+        for (Direction direction : Direction.all()) {
+            if (world.getExitId(from, direction) == to) {
+                return direction;
+            }
+        }
+        throw new IllegalStateException("Rooms " + from + " and " + to + " are not adjacent");
+    }
+
+    private void push(int priority, int room) {
+        if (openSize == open.length) {
+            open = Arrays.copyOf(open, openSize * 2);
+        }
+        long entry = ((long) priority << 32) | room;
+        int i = openSize++;
+        while (i > 0) {
+            int up = (i - 1) >>> 1;
+            if (open[up] <= entry) {
+                break;
+            }
+            open[i] = open[up];
+            i = up;
+        }
+        open[i] = entry;
+    }
+
+    private long pop() {
+        long top = open[0];
+        long last = open[--openSize];
+        int i = 0;
+        int half = openSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < openSize && open[child + 1] < open[child]) {
+                child++;
+            }
+            if (last <= open[child]) {
+                break;
+            }
+            open[i] = open[child];
+            i = child;
+        }
+        open[i] = last;
+        return top;
+    }
+
+    @Override
+    public String toString() {
+        return "RouteService[searches=" + searches + ", cacheHits=" + cacheHits
+            + ", cached=" + cache.size() + "]";
+    }
+}
@@ -3,79 +3,85 @@ package games.dungeon_puzzle;
 import java.io.*;
 import java.util.*;
 
-public class ScoreManager {
-    private static String SCORES_FILE;
-    private List<Score> highScores;
+public class ScoreManager implements Closeable {
     private static final int MAX_SCORES = 10;
+    private final ScoreStore store;
+    private final Leaderboard leaderboard;
 
     public ScoreManager() {
+        this(new File("scores"));
+    }
+
+    ScoreManager(File directory) {
         // Create scores directory if it doesn't exist
-        File directory = new File("scores");
         if (!directory.exists()) {
             directory.mkdir();
         }
         
-        // Use absolute path for scores file
-        SCORES_FILE = directory.getAbsolutePath() + "/dungeon_puzzle_scores.txt";
-        highScores = new ArrayList<>();
+        leaderboard = new Leaderboard(MAX_SCORES);
+        store = openStore(directory);
         loadScores();
     }
 
-    public void addScore(Score newScore) {
-        highScores.add(newScore);
-        sortScores();
-        trimScores();
-        saveScores();
+    private ScoreManager(Leaderboard leaderboard) {
+        this.store = null;
+        this.leaderboard = leaderboard;
     }
 
-    private void sortScores() {
-        Collections.sort(highScores);
+    // A board that is never written to disk, for simulations and tests
+    public static ScoreManager inMemory() {
+        return new ScoreManager(new Leaderboard(MAX_SCORES));
     }
 
-    private void trimScores() {
-        if (highScores.size() > MAX_SCORES) {
-            highScores = highScores.subList(0, MAX_SCORES);
+    /**
+     * Safe to call from many sessions at once. Every score is appended to
+     * the history; returns whether it also made the board.
+     */
+    public boolean addScore(Score newScore) {
+        if (store != null) {
+            long started = System.nanoTime();
+            try {
+                store.append(newScore);
+            } catch (IllegalStateException e) {
+                System.err.println("Error saving score: " + e.getMessage());
+            }
+            GameMetrics.GLOBAL.scoreSaves.record(System.nanoTime() - started);
         }
+        return leaderboard.submit(newScore);
+    }
+
+    public boolean qualifies(Score score) {
+        return leaderboard.qualifies(score);
     }
 
     public List<Score> getHighScores() {
-        return new ArrayList<>(highScores);
+        return new ArrayList<>(leaderboard.snapshot());
     }
 
-    private void saveScores() {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(SCORES_FILE))) {
-            for (Score score : highScores) {
-                writer.println(String.format("%s,%d,%d", 
-                    score.getPlayerName(), 
-                    score.getScore(), 
-                    score.getTimeTaken()));
-            }
-        } catch (IOException e) {
-            System.err.println("Error saving scores: " + e.getMessage());
+    @Override
+    public void close() throws IOException {
+        if (store != null) {
+            store.close();
         }
     }
 
-    private void loadScores() {
-        File file = new File(SCORES_FILE);
-        if (!file.exists()) {
-            return;
+    // Falls back to an in-memory board if the file can't be used
+    private static ScoreStore openStore(File directory) {
+        File file = new File(directory.getAbsoluteFile(), "dungeon_puzzle_scores.bin");
+        File legacyFile = new File(directory.getAbsoluteFile(), "dungeon_puzzle_scores.txt");
+        try {
+            return ScoreStore.open(file, legacyFile);
+        } catch (IOException e) {
+            System.err.println("Error opening scores: " + e.getMessage());
+            return null;
         }
+    }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length == 3) {
-                    highScores.add(new Score(
-                        parts[0],
-                        Integer.parseInt(parts[1]),
-                        Long.parseLong(parts[2])
-                    ));
-                }
-            }
-            sortScores();
-        } catch (IOException e) {
-            System.err.println("Error loading scores: " + e.getMessage());
+    private void loadScores() {
+        if (store != null) {
+            long started = System.nanoTime();
+            store.loadInto(leaderboard);
+            GameMetrics.GLOBAL.scoreLoads.record(System.nanoTime() - started);
         }
     }
-} 
\ No newline at end of file
+}
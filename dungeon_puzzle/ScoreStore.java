@@ -0,0 +1,226 @@
+package games.dungeon_puzzle;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only history of every finished game, stored as fixed-width binary
+ * records and accessed through a MappedByteBuffer.
+ *
+ * Layout (big-endian):
+ *   header  - magic "DPSC" (int), version (short), record size (short),
+ *             record count (long), 16 reserved bytes
+ *   record  - score (int), time taken in seconds (long), name length (byte),
+ *             UTF-8 name padded to NAME_BYTES
+ *
+ * The count is written after the record, so a crash mid-append loses at
+ * most that record. A header claiming more records than the file holds is
+ * cut back to what is there. Loading touches no parser: a record's score
+ * and time are checked against the board before its name is even decoded.
+ */
+public class ScoreStore implements Closeable {
+    static final int MAGIC = 0x44505343;
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 32;
+    static final int NAME_BYTES = 51;
+    static final int RECORD_BYTES = 64;
+
+    private static final int COUNT_OFFSET = 8;
+    private static final int INITIAL_CAPACITY = 1024;
+    // A single mapping caps the file at 2 GB, about 33 million records
+    private static final long MAX_RECORDS = (Integer.MAX_VALUE - HEADER_BYTES) / RECORD_BYTES;
+
+    public interface Visitor {
+        void visit(String playerName, int score, long timeTaken);
+    }
+
+    private final FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long capacity;
+    private long count;
+
+    private ScoreStore(FileChannel channel) throws IOException {
+        this.channel = channel;
+        if (channel.size() < HEADER_BYTES) {
+            map(INITIAL_CAPACITY);
+            buffer.putInt(0, MAGIC);
+            buffer.putShort(4, VERSION);
+            buffer.putShort(6, (short) RECORD_BYTES);
+            buffer.putLong(COUNT_OFFSET, 0);
+            count = 0;
+        } else {
+            long stored = (channel.size() - HEADER_BYTES) / RECORD_BYTES;
+            map(Math.max(INITIAL_CAPACITY, stored));
+            if (buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION
+                    || buffer.getShort(6) != RECORD_BYTES) {
+                throw new IOException("Not a version " + VERSION + " score file");
+            }
+            count = buffer.getLong(COUNT_OFFSET);
+            if (count < 0 || count > stored) {
+                System.err.println("Score file claims " + count + " records but holds "
+                    + stored + "; keeping what is there");
+                count = count < 0 ? 0 : stored;
+                buffer.putLong(COUNT_OFFSET, count);
+            }
+        }
+    }
+
+    /**
+     * Opens the binary store, creating it if needed. If it doesn't exist
+     * yet and legacyFile does, the CSV scores are migrated into it once.
+     */
+    public static ScoreStore open(File file, File legacyFile) throws IOException {
+        if (!file.exists() && legacyFile != null && legacyFile.exists()) {
+            migrate(legacyFile, file.toPath());
+        }
+        return open(file.toPath(), StandardOpenOption.CREATE);
+    }
+
+    private static ScoreStore open(Path path, StandardOpenOption create) throws IOException {
+        FileChannel channel = FileChannel.open(path, create, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            return new ScoreStore(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    // Builds the store beside its final name and renames it into place, so a
+    // crash part way leaves no store behind and the migration runs again
+    private static void migrate(File legacyFile, Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".migrating");
+        Files.deleteIfExists(temp);
+        try (ScoreStore store = open(temp, StandardOpenOption.CREATE_NEW)) {
+            store.importCsv(legacyFile);
+        }
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public synchronized void append(Score score) {
+        ensureCapacity(count + 1);
+        int offset = recordOffset(count);
+        buffer.putInt(offset, score.getScore());
+        buffer.putLong(offset + 4, score.getTimeTaken());
+
+        byte[] name = encodeName(score.getPlayerName());
+        buffer.put(offset + 12, (byte) name.length);
+        buffer.put(offset + 13, name);
+
+        count++;
+        buffer.putLong(COUNT_OFFSET, count);
+    }
+
+    /**
+     * Streams every record into the board. Only records that could make the
+     * board are turned into Score objects.
+     */
+    public synchronized void loadInto(Leaderboard leaderboard) {
+        byte[] name = new byte[NAME_BYTES];
+        for (long i = 0; i < count; i++) {
+            int offset = recordOffset(i);
+            int score = buffer.getInt(offset);
+            long timeTaken = buffer.getLong(offset + 4);
+            if (leaderboard.qualifies(score, timeTaken)) {
+                int length = Math.min(buffer.get(offset + 12) & 0xFF, NAME_BYTES);
+                buffer.get(offset + 13, name, 0, length);
+                leaderboard.submit(new Score(new String(name, 0, length, StandardCharsets.UTF_8),
+                    score, timeTaken));
+            }
+        }
+    }
+
+    public synchronized void forEach(Visitor visitor) {
+        byte[] name = new byte[NAME_BYTES];
+        for (long i = 0; i < count; i++) {
+            int offset = recordOffset(i);
+            int length = Math.min(buffer.get(offset + 12) & 0xFF, NAME_BYTES);
+            buffer.get(offset + 13, name, 0, length);
+            visitor.visit(new String(name, 0, length, StandardCharsets.UTF_8),
+                buffer.getInt(offset), buffer.getLong(offset + 4));
+        }
+    }
+
+    public synchronized long size() {
+        return count;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+
+    // Names longer than NAME_BYTES are cut at a character boundary
+    static byte[] encodeName(String playerName) {
+        byte[] bytes = (playerName == null ? "" : playerName).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length <= NAME_BYTES) {
+            return bytes;
+        }
+        int length = NAME_BYTES;
+        while (length > 0 && (bytes[length] & 0xC0) == 0x80) {
+            length--;
+        }
+        byte[] truncated = new byte[length];
+        System.arraycopy(bytes, 0, truncated, 0, length);
+        return truncated;
+    }
+
+    private void importCsv(File legacyFile) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new FileReader(legacyFile))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // Split from the right so names that contain commas survive
+                int timeComma = line.lastIndexOf(',');
+                int scoreComma = timeComma > 0 ? line.lastIndexOf(',', timeComma - 1) : -1;
+                if (scoreComma < 0) {
+                    continue;
+                }
+                try {
+                    append(new Score(line.substring(0, scoreComma),
+                        Integer.parseInt(line.substring(scoreComma + 1, timeComma)),
+                        Long.parseLong(line.substring(timeComma + 1))));
+                } catch (NumberFormatException e) {
+                    System.err.println("Skipping bad score line: " + line);
+                }
+            }
+        }
+    }
+
+    private int recordOffset(long index) {
+        return (int) (HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    private void ensureCapacity(long records) {
+        if (records <= capacity) {
+            return;
+        }
+        try {
+            map(Math.max(records, Math.min(capacity * 2, MAX_RECORDS)));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not grow score file", e);
+        }
+    }
+
+    private void map(long records) throws IOException {
+        if (records > MAX_RECORDS) {
+            throw new IOException("Score file is full");
+        }
+        long bytes = HEADER_BYTES + records * RECORD_BYTES;
+        if (buffer != null) {
+            buffer.force();
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+        capacity = records;
+    }
+}
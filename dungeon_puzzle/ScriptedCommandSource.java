@@ -0,0 +1,22 @@
+package games.dungeon_puzzle;
+
+import java.util.List;
+
+public class ScriptedCommandSource implements CommandSource {
+    private final List<String> lines;
+    private int position;
+
+    public ScriptedCommandSource(List<String> lines) {
+        this.lines = lines;
+        this.position = 0;
+    }
+
+    @Override
+    public String nextLine() {
+        return position < lines.size() ? lines.get(position++) : null;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+}
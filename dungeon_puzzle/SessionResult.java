@@ -0,0 +1,27 @@
+package games.dungeon_puzzle;
+
+public class SessionResult {
+    private final boolean won;
+    private final boolean died;
+    private final boolean timedOut;
+    private final int score;
+    private final int turns;
+    private final int puzzlesSolved;
+
+    public SessionResult(boolean won, boolean died, boolean timedOut,
+                         int score, int turns, int puzzlesSolved) {
+        this.won = won;
+        this.died = died;
+        this.timedOut = timedOut;
+        this.score = score;
+        this.turns = turns;
+        this.puzzlesSolved = puzzlesSolved;
+    }
+
+    public boolean isWon() { return won; }
+    public boolean isDied() { return died; }
+    public boolean isTimedOut() { return timedOut; }
+    public int getScore() { return score; }
+    public int getTurns() { return turns; }
+    public int getPuzzlesSolved() { return puzzlesSolved; }
+}
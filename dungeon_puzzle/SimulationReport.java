@@ -0,0 +1,80 @@
+package games.dungeon_puzzle;
+
+/**
+ * Aggregate of many session results. Reports are built per fork-join leaf
+ * and combined with merge(), so no instance is ever shared between threads.
+ * A report also subscribes to each of its sessions' events and counts
+ * them by type.
+ */
+public class SimulationReport implements EventBus.Handler {
+    private long sessions;
+    private long wins;
+    private long deaths;
+    private long timeouts;
+    private long totalScore;
+    private int maxScore;
+    private long totalTurns;
+    private long totalPuzzlesSolved;
+    private final long[] eventCounts = new long[GameEvent.Type.values().length];
+
+    public void add(SessionResult result) {
+        sessions++;
+        if (result.isWon()) wins++;
+        if (result.isDied()) deaths++;
+        if (result.isTimedOut()) timeouts++;
+        totalScore += result.getScore();
+        maxScore = Math.max(maxScore, result.getScore());
+        totalTurns += result.getTurns();
+        totalPuzzlesSolved += result.getPuzzlesSolved();
+    }
+
+    @Override
+    public void onEvent(GameEvent event, boolean endOfBatch) {
+        eventCounts[event.getType().ordinal()]++;
+    }
+
+    public SimulationReport merge(SimulationReport other) {
+        for (int i = 0; i < eventCounts.length; i++) {
+            eventCounts[i] += other.eventCounts[i];
+        }
+        sessions += other.sessions;
+        wins += other.wins;
+        deaths += other.deaths;
+        timeouts += other.timeouts;
+        totalScore += other.totalScore;
+        maxScore = Math.max(maxScore, other.maxScore);
+        totalTurns += other.totalTurns;
+        totalPuzzlesSolved += other.totalPuzzlesSolved;
+        return this;
+    }
+
+    public long getSessions() { return sessions; }
+    public long getWins() { return wins; }
+    public long getDeaths() { return deaths; }
+    public long getTimeouts() { return timeouts; }
+    public long getTotalScore() { return totalScore; }
+    public int getMaxScore() { return maxScore; }
+    public long getTotalTurns() { return totalTurns; }
+    public long getTotalPuzzlesSolved() { return totalPuzzlesSolved; }
+    public long getEventCount(GameEvent.Type type) { return eventCounts[type.ordinal()]; }
+
+    public double getAverageScore() {
+        return sessions == 0 ? 0 : (double) totalScore / sessions;
+    }
+
+    public double getAverageTurns() {
+        return sessions == 0 ? 0 : (double) totalTurns / sessions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Sessions: %d  Wins: %d  Deaths: %d  Timeouts: %d%n" +
+            "Average Score: %.1f  Max Score: %d  Average Turns: %.1f  Total Turns: %d  Puzzles Solved: %d%n" +
+            "Moves: %d  Items Taken: %d  Fights: %d  Enemies Defeated: %d  Escapes: %d",
+            sessions, wins, deaths, timeouts,
+            getAverageScore(), maxScore, getAverageTurns(), totalTurns, totalPuzzlesSolved,
+            getEventCount(GameEvent.Type.MOVED), getEventCount(GameEvent.Type.ITEM_TAKEN),
+            getEventCount(GameEvent.Type.COMBAT_STARTED), getEventCount(GameEvent.Type.ENEMY_DEFEATED),
+            getEventCount(GameEvent.Type.ESCAPED));
+    }
+}
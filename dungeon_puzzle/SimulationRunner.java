@@ -0,0 +1,450 @@
+package games.dungeon_puzzle;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+/**
+ * Runs many headless Game sessions on a fork-join pool. Session indices are
+ * split in half until a batch is small enough to play sequentially, and the
+ * per-batch reports are merged on the way back up.
+ *
+ * Sessions normally run on the system clock, so none lasts long enough to
+ * reach the time limit. Given a think time, each session instead gets its
+ * own virtual timing wheel that moves on by that much before every
+ * command, and the limit and its warning fire from the wheel as they
+ * would on a server.
+ */
+public class SimulationRunner {
+    private static final int BATCH_SIZE = 64;
+    private static final String[] BOT_COMMANDS = {
+        "go north", "go south", "go east", "go west",
+        "take torch", "take crystal", "take orb", "take book", "take scroll",
+        "take relic", "take amulet", "take wand", "take crown", "take potion",
+        "solve", "torch and crystal", "book and scroll", "amulet and wand",
+        "1", "1", "1", "2", "3",
+        "look", "status", "back", "forward"
+    };
+
+    private final ForkJoinPool pool;
+    private final IntFunction<CommandSource> scripts;
+    private final ScoreManager scoreManager;
+    private final long thinkNanos;
+
+    public SimulationRunner(ForkJoinPool pool, IntFunction<CommandSource> scripts) {
+        this(pool, scripts, ScoreManager.inMemory());
+    }
+
+    public SimulationRunner(ForkJoinPool pool, IntFunction<CommandSource> scripts,
+                            ScoreManager scoreManager) {
+        this(pool, scripts, scoreManager, 0);
+    }
+
+    public SimulationRunner(ForkJoinPool pool, IntFunction<CommandSource> scripts,
+                            ScoreManager scoreManager, long thinkNanos) {
+        this.pool = pool;
+        this.scripts = scripts;
+        this.scoreManager = scoreManager;
+        this.thinkNanos = thinkNanos;
+    }
+
+    public ScoreManager getScoreManager() {
+        return scoreManager;
+    }
+
+    public SimulationReport run(int sessions) {
+        return pool.invoke(new SessionBatch(0, sessions));
+    }
+
+    private SessionResult runSession(int index, SimulationReport report) {
+        if (thinkNanos > 0) {
+            return runTimedSession(index, report);
+        }
+        // Seeded by index, so any session in a report can be rerun on its own
+        Game game = new Game(scripts.apply(index), OutputSink.NULL, scoreManager, null, index, GameClock.SYSTEM);
+        game.getEvents().subscribe(report);
+        return game.play();
+    }
+
+    private SessionResult runTimedSession(int index, SimulationReport report) {
+        TimingWheel wheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+        ThinkingPlayer player = new ThinkingPlayer(scripts.apply(index), wheel, thinkNanos);
+        Game game = new Game(player, OutputSink.NULL, scoreManager, null, index, wheel.clock());
+        player.game = game;
+        game.getEvents().subscribe(report);
+        // Timers fire inside advance(), which is already on the session's thread
+        game.armTimers(wheel, Runnable::run);
+        return game.play();
+    }
+
+    /**
+     * Plays bots on virtual wheels, replays each session's command log and
+     * returns how many replays came out differently, in output or result.
+     * With a long enough think time most sessions run out of time, so this
+     * checks that timer firings replay too.
+     */
+    public static int checkReplays(int sessions, int commands, long thinkNanos) throws IOException {
+        int mismatches = 0;
+        for (int index = 0; index < sessions; index++) {
+            TimingWheel wheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+            ThinkingPlayer player = new ThinkingPlayer(randomBot(index, commands), wheel, thinkNanos);
+            MemorySink played = new MemorySink();
+            Game game = new Game(player, played, ScoreManager.inMemory(), null, index, wheel.clock());
+            player.game = game;
+            CommandLog log = game.startRecording();
+            game.armTimers(wheel, Runnable::run);
+            SessionResult result = game.play();
+
+            MemorySink replayed = new MemorySink();
+            SessionResult again = CommandLog.replay(log.toByteArray(), replayed, ScoreManager.inMemory(), null);
+            if (!sameResult(result, again) || !Arrays.equals(played.toByteArray(), replayed.toByteArray())) {
+                System.err.println("Session " + index + " replayed differently");
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    /**
+     * Records bots whose lines mix game commands with random text, some of
+     * it too long for the modified UTF-8 older logs used, at random
+     * intervals, and returns how many replays came out differently. The
+     * game repeats unknown item names back, so a line that didn't survive
+     * the log shows up in the output.
+     */
+    public static int checkLogs(int sessions, int commands) throws IOException {
+        int mismatches = 0;
+        for (int index = 0; index < sessions; index++) {
+            Random random = new Random(index);
+            CommandSource script = randomBot(index, commands);
+            TimingWheel wheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+            MemorySink played = new MemorySink();
+            Game game = new Game(null, played, ScoreManager.inMemory(), null, index, wheel.clock());
+            CommandLog log = game.startRecording();
+            game.armTimers(wheel, Runnable::run);
+            game.start();
+            for (String line = script.nextLine(); line != null && game.isActive(); line = script.nextLine()) {
+                wheel.advance(TimeUnit.MILLISECONDS.toNanos(random.nextInt(3000)));
+                if (game.isActive()) {
+                    game.step(random.nextInt(8) == 0 ? "take " + randomText(random) : line);
+                }
+            }
+
+            MemorySink replayed = new MemorySink();
+            SessionResult again = CommandLog.replay(log.toByteArray(), replayed, ScoreManager.inMemory(), null);
+            if (!sameResult(game.getResult(), again) || !Arrays.equals(played.toByteArray(), replayed.toByteArray())) {
+                System.err.println("Session " + index + " replayed differently");
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    // One to four UTF-8 bytes per code point, NUL included; one text in twenty passes 64 KB
+    private static String randomText(Random random) {
+        int length = random.nextInt(20) == 0 ? 32_000 + random.nextInt(16_000) : 1 + random.nextInt(20);
+        StringBuilder text = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    text.append('\0');
+                    break;
+                case 1:
+                    text.append((char) ('a' + random.nextInt(26)));
+                    break;
+                case 2:
+                    text.append((char) (0xC0 + random.nextInt(0x40)));
+                    break;
+                case 3:
+                    text.append((char) (0x4E00 + random.nextInt(0x1000)));
+                    break;
+                default:
+                    text.appendCodePoint(0x1F600 + random.nextInt(0x50));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Plays bots through half their script, saves a checkpoint, restores
+     * it into a fresh game and plays the other half in both. Returns how
+     * many sessions came out differently: in the restored game's own
+     * checkpoint, in output after the restore or in the result. Odd
+     * sessions play in a generated dungeon, so changed rooms are covered.
+     */
+    public static int checkCheckpoints(int sessions, int commands) throws IOException {
+        int mismatches = 0;
+        for (int index = 0; index < sessions; index++) {
+            CommandSource script = randomBot(index, commands);
+            TimingWheel wheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+            MemorySink played = new MemorySink();
+            Game game = new Game(null, played, ScoreManager.inMemory(), checkWorld(index), index, wheel.clock());
+            game.start();
+            for (int i = 0; i <= commands / 2 && game.isActive(); i++) {
+                wheel.advance(TimeUnit.SECONDS.toNanos(1));
+                game.step(script.nextLine());
+            }
+            byte[] saved = Checkpoint.save(game);
+            played.reset();
+
+            TimingWheel restoredWheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+            restoredWheel.advance(wheel.clock().millis() * 1_000_000);
+            MemorySink resumed = new MemorySink();
+            Game restored = new Game(null, resumed, ScoreManager.inMemory(), checkWorld(index), index,
+                restoredWheel.clock());
+            Checkpoint.restore(restored, saved);
+            boolean same = Arrays.equals(saved, Checkpoint.save(restored));
+            for (String line = script.nextLine(); line != null && game.isActive(); line = script.nextLine()) {
+                wheel.advance(TimeUnit.SECONDS.toNanos(1));
+                restoredWheel.advance(TimeUnit.SECONDS.toNanos(1));
+                game.step(line);
+                restored.step(line);
+            }
+            if (!same || !sameResult(game.getResult(), restored.getResult())
+                    || !Arrays.equals(played.toByteArray(), resumed.toByteArray())) {
+                System.err.println("Session " + index + " restored differently");
+                mismatches++;
+            }
+        }
+        return mismatches;
+    }
+
+    private static RoomStore checkWorld(int index) {
+        return index % 2 == 0 ? null : new DungeonGenerator(index, 40, 40);
+    }
+
+    /**
+     * Draws from alias tables and spawn tables over random weights and
+     * checks the counts against the weights with a chi-square test,
+     * returning how many distributions look wrong. The spawn rosters are
+     * sized around the block length, so tiers end inside the first block,
+     * on block boundaries and past the last whole block. The seed is
+     * fixed, so a result repeats.
+     */
+    public static int checkSpawns() {
+        SplittableRandom random = new SplittableRandom(42);
+        int failures = 0;
+        for (int groupCount : new int[] {1, 20}) {
+            int[] groupStart = new int[groupCount + 1];
+            for (int g = 0; g < groupCount; g++) {
+                groupStart[g + 1] = groupStart[g] + 1 + random.nextInt(300);
+            }
+            double[] weights = randomWeights(groupStart[groupCount], random);
+            AliasTable table = new AliasTable(weights, groupStart);
+            for (int g = 0; g < groupCount; g++) {
+                int start = groupStart[g];
+                long[] counts = new long[groupStart[g + 1] - start];
+                for (long i = 0, draws = 5000L * counts.length; i < draws; i++) {
+                    counts[table.sample(g, random)]++;
+                }
+                if (!fits(counts, Arrays.copyOfRange(weights, start, groupStart[g + 1]))) {
+                    System.err.println("Alias group of " + counts.length + " is off its weights");
+                    failures++;
+                }
+            }
+        }
+
+        Item loot = ItemCatalog.intern("bone", "A mysterious glowing bone", 15);
+        for (int typeCount : new int[] {1, 4, 63, 64, 65, 200, 5000}) {
+            double[] weights = randomWeights(typeCount, random);
+            List<EnemyType> roster = new ArrayList<>(typeCount);
+            for (int i = 0; i < typeCount; i++) {
+                roster.add(new EnemyType("t" + i, 10, 5, 1 + i / 3, weights[i], loot));
+            }
+            SpawnTable table = new SpawnTable(roster);
+            List<EnemyType> types = table.getTypes();
+            Map<EnemyType, Integer> position = new IdentityHashMap<>();
+            double[] sorted = new double[typeCount];
+            for (int i = 0; i < typeCount; i++) {
+                position.put(types.get(i), i);
+                sorted[i] = types.get(i).getWeight();
+            }
+            // Every level of a small roster; the ends and about a dozen others of a large one
+            int hardest = types.get(typeCount - 1).getDifficulty();
+            for (int level = 1; level < hardest; level += hardest <= 100 ? 1 : 1 + random.nextInt(hardest / 6)) {
+                failures += checkLevel(table, level, position, sorted, random);
+            }
+            failures += checkLevel(table, hardest, position, sorted, random);
+        }
+        return failures;
+    }
+
+    private static int checkLevel(SpawnTable table, int level, Map<EnemyType, Integer> position,
+                                  double[] weights, SplittableRandom random) {
+        int end = position.get(table.hardestAt(level)) + 1;
+        long[] counts = new long[end];
+        for (long i = 0, draws = 1000L * end; i < draws; i++) {
+            int index = position.get(table.sample(level, random));
+            if (index >= end) {
+                System.err.println("Level " + level + " of " + weights.length + " types drew a harder type");
+                return 1;
+            }
+            counts[index]++;
+        }
+        if (!fits(counts, Arrays.copyOf(weights, end))) {
+            System.err.println("Level " + level + " of " + weights.length + " types is off its weights");
+            return 1;
+        }
+        return 0;
+    }
+
+    // Between 0.5 and 10, so even the lightest entry expects dozens of draws
+    private static double[] randomWeights(int count, SplittableRandom random) {
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            weights[i] = 0.5 + 9.5 * random.nextDouble();
+        }
+        return weights;
+    }
+
+    // Chi-square against the weights, turned into a normal score by Wilson-Hilferty; passes below 5 sigma
+    private static boolean fits(long[] counts, double[] weights) {
+        long draws = 0;
+        double total = 0;
+        for (int i = 0; i < counts.length; i++) {
+            draws += counts[i];
+            total += weights[i];
+        }
+        double chiSquare = 0;
+        for (int i = 0; i < counts.length; i++) {
+            double expected = draws * weights[i] / total;
+            chiSquare += (counts[i] - expected) * (counts[i] - expected) / expected;
+        }
+        int degrees = counts.length - 1;
+        if (degrees == 0) {
+            return chiSquare == 0;
+        }
+        double v = 2.0 / (9 * degrees);
+        return (Math.cbrt(chiSquare / degrees) - (1 - v)) / Math.sqrt(v) < 5;
+    }
+
+    private static boolean sameResult(SessionResult a, SessionResult b) {
+        return a.isWon() == b.isWon() && a.isDied() == b.isDied() && a.isTimedOut() == b.isTimedOut()
+            && a.getScore() == b.getScore() && a.getTurns() == b.getTurns()
+            && a.getPuzzlesSolved() == b.getPuzzlesSolved();
+    }
+
+    // Lets virtual time pass before each line, and stops once a timer has ended the game
+    private static final class ThinkingPlayer implements CommandSource {
+        private final CommandSource script;
+        private final TimingWheel wheel;
+        private final long thinkNanos;
+        private Game game;
+
+        ThinkingPlayer(CommandSource script, TimingWheel wheel, long thinkNanos) {
+            this.script = script;
+            this.wheel = wheel;
+            this.thinkNanos = thinkNanos;
+        }
+
+        @Override
+        public String nextLine() {
+            wheel.advance(thinkNanos);
+            return game.isActive() ? script.nextLine() : null;
+        }
+    }
+
+    private class SessionBatch extends RecursiveTask<SimulationReport> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+
+        SessionBatch(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected SimulationReport compute() {
+            if (to - from <= BATCH_SIZE) {
+                SimulationReport report = new SimulationReport();
+                for (int i = from; i < to; i++) {
+                    report.add(runSession(i, report));
+                }
+                return report;
+            }
+            int mid = (from + to) >>> 1;
+            SessionBatch left = new SessionBatch(from, mid);
+            left.fork();
+            SimulationReport right = new SessionBatch(mid, to).compute();
+            return left.join().merge(right);
+        }
+    }
+
+    // Random-walk bot: a player name followed by commands drawn uniformly
+    public static CommandSource randomBot(long seed, int length) {
+        Random random = new Random(seed);
+        List<String> lines = new ArrayList<>(length + 1);
+        lines.add("bot-" + seed);
+        for (int i = 0; i < length; i++) {
+            lines.add(BOT_COMMANDS[random.nextInt(BOT_COMMANDS.length)]);
+        }
+        return new ScriptedCommandSource(lines);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals("--check-replays")) {
+            int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int commands = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+            double thinkSeconds = args.length > 3 ? Double.parseDouble(args[3]) : 1;
+            int mismatches = checkReplays(sessions, commands, (long) (thinkSeconds * 1e9));
+            System.out.println("Replayed " + sessions + " sessions, " + mismatches + " mismatches");
+            if (mismatches > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-spawns")) {
+            int failures = checkSpawns();
+            System.out.println("Checked spawn distributions, " + failures + " failures");
+            if (failures > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-logs")) {
+            int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int commands = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+            int mismatches = checkLogs(sessions, commands);
+            System.out.println("Replayed " + sessions + " logs, " + mismatches + " mismatches");
+            if (mismatches > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("--check-checkpoints")) {
+            int sessions = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+            int commands = args.length > 2 ? Integer.parseInt(args[2]) : 400;
+            int mismatches = checkCheckpoints(sessions, commands);
+            System.out.println("Restored " + sessions + " checkpoints, " + mismatches + " mismatches");
+            if (mismatches > 0) {
+                System.exit(1);
+            }
+            return;
+        }
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int commands = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        // Virtual seconds each bot spends on a command; 0 plays on the real clock
+        double thinkSeconds = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+
+        SimulationRunner runner = new SimulationRunner(ForkJoinPool.commonPool(),
+            index -> randomBot(index, commands), ScoreManager.inMemory(), (long) (thinkSeconds * 1e9));
+
+        long start = System.nanoTime();
+        SimulationReport report = runner.run(sessions);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        System.out.println(report);
+        System.out.println("Elapsed: " + elapsedMillis + " ms (" +
+            (report.getTotalTurns() * 60_000L / Math.max(1, elapsedMillis)) + " turns/minute)");
+    }
+}
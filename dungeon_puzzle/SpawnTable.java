@@ -0,0 +1,177 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Which enemies can appear at each difficulty, and how often. Tier k holds
+ * every type whose difficulty is at most the k-th smallest difficulty in
+ * the table, so easy enemies keep turning up as the player progresses.
+ * With types sorted by difficulty each tier is a prefix of the list.
+ *
+ * The sorted list is cut into blocks of at least sqrt(types) types, and
+ * one AliasTable holds a group of weights for each whole block plus a
+ * group for every run of whole blocks from the start, weighted by the
+ * blocks' totals. A draw from a tier lands either in the blocks the tier
+ * covers whole, costing two alias draws, or in the part of the next block
+ * below the tier's end, found in a running total of the weights. There
+ * are at most sqrt(types) blocks, so the runs hold no more entries than
+ * there are types, and building and memory stay linear in the number of
+ * types. Immutable and shared by every session.
+ */
+public final class SpawnTable {
+    static final int MAX_DIFFICULTY = 1 << 16;
+    private static final int MIN_BLOCK = 64;
+    private static final int SHORT_TAIL = 16;
+
+    public static final SpawnTable STANDARD = new SpawnTable(List.of(
+        new EnemyType("Skeleton", 30, 10, 1, 4, ItemCatalog.intern("bone", "A mysterious glowing bone", 15)),
+        new EnemyType("Ghost", 20, 15, 2, 3, ItemCatalog.intern("ectoplasm", "A ghostly substance", 20)),
+        new EnemyType("Goblin", 40, 8, 3, 3, ItemCatalog.intern("gold_coin", "A shiny gold coin", 25)),
+        new EnemyType("Dark Wizard", 50, 12, 4, 2, ItemCatalog.intern("spell_scroll", "A powerful magic scroll", 30))));
+
+    private final List<EnemyType> types;
+    private final int block;
+    // cumulative[i] is the total weight of the first i types
+    private final double[] cumulative;
+    // A group per whole block of the sorted list
+    private final AliasTable blocks;
+    // Group w - 1 draws one of the first w blocks by total weight
+    private final AliasTable blockRuns;
+    // For each tier, easiest first: its difficulty, how many types it holds
+    // and how many whole blocks those fill
+    private final int[] tierDifficulty;
+    private final int[] tierEnd;
+    private final int[] tierBlocks;
+
+    public SpawnTable(List<EnemyType> roster) {
+        if (roster.isEmpty()) {
+            throw new IllegalArgumentException("A spawn table needs at least one enemy type");
+        }
+        List<EnemyType> sorted = new ArrayList<>(roster);
+        sorted.sort(Comparator.comparingInt(EnemyType::getDifficulty));
+        types = Collections.unmodifiableList(sorted);
+
+        int n = sorted.size();
+        double[] weights = new double[n];
+        cumulative = new double[n + 1];
+        int tierCount = 0;
+        for (int i = 0; i < n; i++) {
+            weights[i] = sorted.get(i).getWeight();
+            if (!(weights[i] > 0) || Double.isInfinite(weights[i])) {
+                throw new IllegalArgumentException("Weights must be positive: " + weights[i]);
+            }
+            cumulative[i + 1] = cumulative[i] + weights[i];
+            if (i + 1 == n || sorted.get(i + 1).getDifficulty() != sorted.get(i).getDifficulty()) {
+                tierCount++;
+            }
+        }
+        block = Math.max(MIN_BLOCK, (int) Math.ceil(Math.sqrt(n)));
+        int blockCount = n / block;
+        int[] blockStart = new int[blockCount + 1];
+        int[] runStart = new int[blockCount + 1];
+        double[] runWeights = new double[blockCount * (blockCount + 1) / 2];
+        for (int b = 0; b < blockCount; b++) {
+            blockStart[b + 1] = (b + 1) * block;
+            runStart[b + 1] = runStart[b] + b + 1;
+            // Run b is the first b + 1 blocks: run b - 1 plus block b
+            System.arraycopy(runWeights, runStart[b] - b, runWeights, runStart[b], b);
+            runWeights[runStart[b] + b] = cumulative[(b + 1) * block] - cumulative[b * block];
+        }
+        blocks = new AliasTable(Arrays.copyOf(weights, blockCount * block), blockStart);
+        blockRuns = new AliasTable(runWeights, runStart);
+        tierDifficulty = new int[tierCount];
+        tierEnd = new int[tierCount];
+        tierBlocks = new int[tierCount];
+        int tier = 0;
+        for (int i = 0; i < n; i++) {
+            // The tier ends with the last type of its difficulty
+            if (i + 1 == n || sorted.get(i + 1).getDifficulty() != sorted.get(i).getDifficulty()) {
+                tierDifficulty[tier] = sorted.get(i).getDifficulty();
+                tierEnd[tier] = i + 1;
+                tierBlocks[tier++] = (i + 1) / block;
+            }
+        }
+    }
+
+    /**
+     * Draws a type for a player at this difficulty level: any type at or
+     * below it, by weight. Below the easiest type, the easiest tier is
+     * used; above the hardest, every type.
+     */
+    public EnemyType sample(int level, SplittableRandom random) {
+        return sampleTier(tierFor(level), random);
+    }
+
+    // The same draw for a tier already looked up with tierFor
+    EnemyType sampleTier(int tier, SplittableRandom random) {
+        return types.get(draw(tierEnd[tier], tierBlocks[tier], random));
+    }
+
+    // The most difficult type that can appear at this level
+    public EnemyType hardestAt(int level) {
+        return types.get(tierEnd[tierFor(level)] - 1);
+    }
+
+    // Easiest first
+    public List<EnemyType> getTypes() {
+        return types;
+    }
+
+    public int getTierCount() {
+        return tierEnd.length;
+    }
+
+    // An index below end, by weight; a tier of one draws nothing from random
+    private int draw(int end, int whole, SplittableRandom random) {
+        if (end == 1) {
+            return 0;
+        }
+        int partStart = whole * block;
+        double r = random.nextDouble() * cumulative[end];
+        if (r < cumulative[partStart]) {
+            int b = blockRuns.sample(whole - 1, random);
+            return b * block + blocks.sample(b, random);
+        }
+        // The largest i in [partStart, end) with cumulative[i] <= r. The totals
+        // rise, so over a short tail that is how many of them are at or below
+        // r, counted without a branch to mispredict
+        if (end - partStart <= SHORT_TAIL) {
+            int index = partStart;
+            for (int i = partStart + 1; i < end; i++) {
+                index += cumulative[i] <= r ? 1 : 0;
+            }
+            return index;
+        }
+        int lo = partStart;
+        int hi = end - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (cumulative[mid] <= r) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    // The hardest tier at or below level, or the easiest if level is below them all
+    int tierFor(int level) {
+        int lo = 0;
+        int hi = tierDifficulty.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (tierDifficulty[mid] <= level) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,312 @@
+package games.dungeon_puzzle;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Deadlines for many sessions on one hierarchical timing wheel. Time is
+ * cut into ticks. Level 0 has a slot for each of the next 64 ticks, level
+ * 1 a slot for each of the next 64 runs of 64 ticks, and so on for four
+ * levels. Whenever a level-0 rotation completes, the next slot of the
+ * level above is emptied back into the finer levels. Scheduling and
+ * firing a timeout are O(1) however many are pending, and a tick costs
+ * only the timeouts in its slot.
+ *
+ * A real-time wheel reads System.nanoTime and runs its own daemon thread.
+ * A virtual wheel only moves when advance() is called, so a simulation
+ * can play a five-minute limit in microseconds. Either way timeouts fire
+ * on the thread moving the wheel, never early and at most a tick late,
+ * so tasks should be short: hand real work to the session's own thread.
+ *
+ * Any thread may schedule, cancel, pause or resume. New timeouts go
+ * through a queue that the wheel's thread drains each tick. A cancelled
+ * timeout drops its task at once and leaves only a small shell in its
+ * slot until the wheel reaches it.
+ */
+public final class TimingWheel implements Closeable {
+    public static final long DEFAULT_TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final int WHEEL_BITS = 6;
+    private static final int WHEEL_SIZE = 1 << WHEEL_BITS;
+    private static final int LEVELS = 4;
+
+    /**
+     * One scheduled task. Pausing takes it off the wheel and keeps the
+     * time it had left; resuming puts it back with that much to go.
+     */
+    public final class Timeout {
+        private Runnable task;
+        private Entry entry;
+        private long remainingNanos;
+        private boolean done;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        // False if it already fired or was cancelled
+        public synchronized boolean cancel() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            entry = null;
+            task = null;
+            return true;
+        }
+
+        public synchronized boolean pause() {
+            if (done || entry == null) {
+                return false;
+            }
+            remainingNanos = Math.max(0, entry.deadline - now());
+            entry = null;
+            return true;
+        }
+
+        public synchronized boolean resume() {
+            if (done || entry != null) {
+                return false;
+            }
+            entry = new Entry(this, now() + remainingNanos);
+            enqueue(entry);
+            return true;
+        }
+
+        public synchronized boolean isPaused() {
+            return !done && entry == null;
+        }
+
+        public synchronized boolean isDone() {
+            return done;
+        }
+
+        // Nanoseconds until it fires, or 0 once it has fired or was cancelled
+        public synchronized long getRemainingNanos() {
+            if (done) {
+                return 0;
+            }
+            return entry == null ? remainingNanos : Math.max(0, entry.deadline - now());
+        }
+
+        // Whether this entry is still the live one rather than left behind by a cancel or pause
+        private synchronized boolean holds(Entry candidate) {
+            return !done && entry == candidate;
+        }
+
+        // The task, if this entry is still the live one; called on the wheel's thread
+        private synchronized Runnable claim(Entry fired) {
+            if (done || entry != fired) {
+                return null;
+            }
+            done = true;
+            entry = null;
+            Runnable claimed = task;
+            task = null;
+            return claimed;
+        }
+    }
+
+    private static final class Entry {
+        final Timeout owner;
+        final long deadline;
+        long deadlineTick;
+        Entry next;
+
+        Entry(Timeout owner, long deadline) {
+            this.owner = owner;
+            this.deadline = deadline;
+        }
+    }
+
+    private final long tickNanos;
+    private final boolean virtual;
+    private final long origin;
+    private final Thread thread;
+    private final ConcurrentLinkedQueue<Entry> incoming = new ConcurrentLinkedQueue<>();
+    // Owned by the thread moving the wheel
+    private final Entry[][] slots = new Entry[LEVELS][WHEEL_SIZE];
+    private long currentTick;
+    private int onWheel;
+    private volatile long virtualNow;
+    private volatile boolean running = true;
+
+    private TimingWheel(long tickNanos, boolean virtual, String threadName) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive, got " + tickNanos);
+        }
+        this.tickNanos = tickNanos;
+        this.virtual = virtual;
+        this.origin = System.nanoTime();
+        if (virtual) {
+            thread = null;
+        } else {
+            thread = new Thread(this::runRealTime, threadName);
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    public static TimingWheel start(String threadName) {
+        return start(DEFAULT_TICK_NANOS, threadName);
+    }
+
+    public static TimingWheel start(long tickNanos, String threadName) {
+        return new TimingWheel(tickNanos, false, threadName);
+    }
+
+    public static TimingWheel virtual(long tickNanos) {
+        return new TimingWheel(tickNanos, true, null);
+    }
+
+    public Timeout schedule(long delayNanos, Runnable task) {
+        Timeout timeout = new Timeout(task);
+        timeout.entry = new Entry(timeout, now() + Math.max(0, delayNanos));
+        enqueue(timeout.entry);
+        return timeout;
+    }
+
+    // Nanoseconds since the wheel was made, real or virtual
+    public long now() {
+        return virtual ? virtualNow : System.nanoTime() - origin;
+    }
+
+    // The wheel's time in milliseconds, for a Game to read
+    public GameClock clock() {
+        return () -> now() / 1_000_000;
+    }
+
+    /**
+     * Moves a virtual wheel forward, firing everything that comes due on
+     * the calling thread.
+     */
+    public void advance(long nanos) {
+        if (!virtual) {
+            throw new IllegalStateException("Only a virtual wheel can be advanced by hand");
+        }
+        virtualNow += nanos;
+        advanceTo(virtualNow / tickNanos);
+    }
+
+    // Timeouts on the wheel or waiting to join it, including cancelled ones not yet reached
+    public int size() {
+        return onWheel + incoming.size();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    private void enqueue(Entry entry) {
+        incoming.add(entry);
+    }
+
+    private void runRealTime() {
+        while (running) {
+            long elapsed = System.nanoTime() - origin;
+            advanceTo(elapsed / tickNanos);
+            long nextTick = (currentTick + 1) * tickNanos;
+            LockSupport.parkNanos(nextTick - (System.nanoTime() - origin));
+        }
+    }
+
+    private void advanceTo(long targetTick) {
+        while (currentTick < targetTick) {
+            if (onWheel == 0 && incoming.isEmpty()) {
+                // Nothing to cascade or fire on the way, so jump straight there
+                currentTick = targetTick;
+                return;
+            }
+            currentTick++;
+            cascade();
+            // After moving on, so anything already due lands in the slot about to fire
+            drainIncoming();
+            fireSlot();
+        }
+        drainIncoming();
+        fireSlot();
+    }
+
+    private void drainIncoming() {
+        Entry entry;
+        while ((entry = incoming.poll()) != null) {
+            // Rounded up, so nothing fires early
+            entry.deadlineTick = (entry.deadline + tickNanos - 1) / tickNanos;
+            place(entry);
+        }
+    }
+
+    private void place(Entry entry) {
+        long ticks = entry.deadlineTick - currentTick;
+        int level = 0;
+        long slot;
+        if (ticks <= 0) {
+            slot = currentTick;
+        } else {
+            while (level < LEVELS - 1 && ticks >= 1L << (WHEEL_BITS * (level + 1))) {
+                level++;
+            }
+            if (ticks >= 1L << (WHEEL_BITS * (level + 1))) {
+                // Past the last level: park in the slot reached last and cascade from there
+                slot = (currentTick >>> (WHEEL_BITS * level)) - 1;
+            } else {
+                slot = entry.deadlineTick >>> (WHEEL_BITS * level);
+            }
+        }
+        int index = (int) slot & (WHEEL_SIZE - 1);
+        entry.next = slots[level][index];
+        slots[level][index] = entry;
+        onWheel++;
+    }
+
+    // Each time a level wraps round, the next slot of the level above moves down
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if ((currentTick & ((1L << (WHEEL_BITS * level)) - 1)) != 0) {
+                return;
+            }
+            int index = (int) (currentTick >>> (WHEEL_BITS * level)) & (WHEEL_SIZE - 1);
+            Entry entry = slots[level][index];
+            slots[level][index] = null;
+            while (entry != null) {
+                Entry next = entry.next;
+                onWheel--;
+                if (!entry.owner.holds(entry)) {
+                    entry.next = null;
+                } else {
+                    place(entry);
+                }
+                entry = next;
+            }
+        }
+    }
+
+    private void fireSlot() {
+        int index = (int) currentTick & (WHEEL_SIZE - 1);
+        Entry entry = slots[0][index];
+        slots[0][index] = null;
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.next = null;
+            onWheel--;
+            if (entry.deadlineTick > currentTick) {
+                place(entry);
+            } else {
+                Runnable task = entry.owner.claim(entry);
+                if (task != null) {
+                    try {
+                        task.run();
+                    } catch (RuntimeException e) {
+                        System.err.println("Timer task failed: " + e);
+                    }
+                }
+            }
+            entry = next;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package games.dungeon_puzzle;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Collects one turn of a session's output as UTF-8 in a reusable byte
+ * buffer and hands it to the sink in a single write on flush(). Text that
+ * never changes can be encoded once with encode() and copied in with
+ * write().
+ *
+ * Like PrintStream, it never throws: a failed sink write sets the error
+ * flag and the turn is dropped. Not thread-safe; one per session.
+ */
+public class TurnRenderer {
+    private static final int INITIAL_CAPACITY = 1024;
+    // A buffer grown past this by one huge turn is let go after it flushes
+    private static final int RETAINED_CAPACITY = 64 * 1024;
+
+    private final OutputSink sink;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+    private boolean error;
+
+    public TurnRenderer(OutputSink sink) {
+        this.sink = sink;
+    }
+
+    public static byte[] encode(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void print(String text) {
+        int count = text.length();
+        ensureCapacity(count);
+        for (int i = 0; i < count; i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                buffer[length++] = (byte) c;
+            } else {
+                i = encodeSlow(text, i);
+            }
+        }
+    }
+
+    public void println(String text) {
+        print(text);
+        println();
+    }
+
+    public void println() {
+        ensureCapacity(1);
+        buffer[length++] = '\n';
+    }
+
+    public void printf(String format, Object... args) {
+        print(String.format(format, args));
+    }
+
+    public void write(byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, buffer, length, encoded.length);
+        length += encoded.length;
+    }
+
+    /**
+     * Sends everything rendered since the last flush to the sink in one
+     * write. Does nothing if the turn rendered nothing.
+     */
+    public void flush() {
+        if (length == 0) {
+            return;
+        }
+        try {
+            sink.write(buffer, 0, length);
+        } catch (IOException e) {
+            error = true;
+        }
+        length = 0;
+        if (buffer.length > RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+    }
+
+    // Bytes rendered and not yet flushed
+    public int pending() {
+        return length;
+    }
+
+    public boolean checkError() {
+        return error;
+    }
+
+    // Encodes the non-ASCII char at index i; returns the last index consumed
+    private int encodeSlow(String text, int i) {
+        ensureCapacity(4);
+        char c = text.charAt(i);
+        if (c < 0x800) {
+            buffer[length++] = (byte) (0xC0 | (c >> 6));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                && Character.isLowSurrogate(text.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, text.charAt(i + 1));
+            buffer[length++] = (byte) (0xF0 | (codePoint >> 18));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            buffer[length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (codePoint & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            buffer[length++] = '?';
+        } else {
+            buffer[length++] = (byte) (0xE0 | (c >> 12));
+            buffer[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            buffer[length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        // Leave room for the rest of the string, assuming ASCII
+        ensureCapacity(text.length() - i);
+        return i;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+}
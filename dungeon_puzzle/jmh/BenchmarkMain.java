@@ -0,0 +1,25 @@
+package games.dungeon_puzzle;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite with the GC profiler attached, so every result
+ * comes with its allocation rate (gc.alloc.rate.norm is bytes per op).
+ * An optional argument restricts the run to benchmarks matching a regex.
+ */
+public class BenchmarkMain {
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+            .include(args.length > 0 ? args[0] : "games.dungeon_puzzle.*Benchmark")
+            .addProfiler(GCProfiler.class)
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .forks(1)
+            .build();
+        new Runner(options).run();
+    }
+}
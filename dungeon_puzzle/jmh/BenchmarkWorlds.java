@@ -0,0 +1,69 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic fixtures shared by the benchmarks. Everything is seeded so
+ * that runs are comparable across commits.
+ */
+final class BenchmarkWorlds {
+    static final String[] ITEM_NAMES = {
+        "torch", "crystal", "orb", "book", "scroll", "relic",
+        "amulet", "wand", "crown", "potion", "gem", "ring", "key", "map", "compass"
+    };
+
+    private BenchmarkWorlds() {
+    }
+
+    static Game emptyGame() {
+        return new Game(new ScriptedCommandSource(Collections.<String>emptyList()), OutputSink.NULL,
+            ScoreManager.inMemory(), null, 42, GameClock.SYSTEM);
+    }
+
+    // A world of roomCount rooms, each holding itemsPerRoom items
+    static Game gameWithRooms(int roomCount, int itemsPerRoom) {
+        FixedRoomStore world = new FixedRoomStore();
+        Random random = new Random(42);
+        for (int i = 0; i < roomCount; i++) {
+            world.add(roomWithItems(i, "Room" + i, itemsPerRoom, random));
+        }
+        return new Game(new ScriptedCommandSource(Collections.<String>emptyList()), OutputSink.NULL,
+            ScoreManager.inMemory(), world, 42, GameClock.SYSTEM);
+    }
+
+    static Room roomWithItems(int id, String name, int itemCount, Random random) {
+        Room room = new Room(id, name, "A generated benchmark room.");
+        room.addExit(Direction.NORTH, id);
+        room.addExit(Direction.SOUTH, id);
+        for (int i = 0; i < itemCount; i++) {
+            room.addItem(randomItem(i, random));
+        }
+        return room;
+    }
+
+    static List<Item> items(int count) {
+        Random random = new Random(7);
+        List<Item> items = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            items.add(randomItem(i, random));
+        }
+        return items;
+    }
+
+    static List<Score> scores(int count) {
+        Random random = new Random(11);
+        List<Score> scores = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            scores.add(new Score("player" + i, random.nextInt(1000), random.nextInt(300)));
+        }
+        return scores;
+    }
+
+    private static Item randomItem(int index, Random random) {
+        String base = ITEM_NAMES[random.nextInt(ITEM_NAMES.length)];
+        return ItemCatalog.intern(base + index, "A benchmark " + base, 1 + random.nextInt(50));
+    }
+}
@@ -0,0 +1,48 @@
+package games.dungeon_puzzle;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Checkpointing a classic session part way through, and restoring it. The
+ * restore benchmark includes constructing the fresh game it restores into,
+ * since that is what moving a session costs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CheckpointBenchmark {
+    private Game game;
+    private byte[] snapshot;
+
+    @Setup
+    public void setup() {
+        game = BenchmarkWorlds.emptyGame();
+        game.start();
+        game.step("bench");
+        game.step("take torch");
+        game.step("take crystal");
+        game.step("look");
+        snapshot = Checkpoint.save(game);
+    }
+
+    @Benchmark
+    public byte[] save() {
+        return Checkpoint.save(game);
+    }
+
+    @Benchmark
+    public Game restore() throws IOException {
+        Game restored = BenchmarkWorlds.emptyGame();
+        Checkpoint.restore(restored, snapshot);
+        return restored;
+    }
+}
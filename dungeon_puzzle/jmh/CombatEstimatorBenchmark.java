@@ -0,0 +1,50 @@
+package games.dungeon_puzzle;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Monte Carlo fight estimates against the toughest enemy with a wounded
+ * player, on the calling thread (the in-game danger readout) and across
+ * the common pool (tuning runs).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CombatEstimatorBenchmark {
+    @Param({"4096", "1000000"})
+    public int fights;
+
+    private CombatEstimator estimator;
+    private Player player;
+    private Enemy enemy;
+    private long seed;
+
+    @Setup
+    public void setup() {
+        estimator = new CombatEstimator();
+        player = new Player();
+        player.setHealth(40);
+        EnemySpawner spawner = new EnemySpawner();
+        enemy = spawner.spawn(spawner.getEnemyTypes().get(3), new SplittableRandom(42));
+    }
+
+    @Benchmark
+    public CombatEstimate estimateHere() {
+        return estimator.estimateHere(player, 1, enemy, fights, seed++);
+    }
+
+    @Benchmark
+    public CombatEstimate estimateParallel() {
+        return estimator.estimate(player, 1, enemy, fights, seed++);
+    }
+}
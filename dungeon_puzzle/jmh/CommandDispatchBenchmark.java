@@ -0,0 +1,42 @@
+package games.dungeon_puzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Game.step for commands that never block on input, including rendering
+ * the turn and flushing it to a null sink. The world size matters for
+ * commands that touch every room, such as status.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CommandDispatchBenchmark {
+    @Param({"6", "1000", "100000"})
+    public int worldSize;
+
+    @Param({"look", "inventory", "status", "help", "take nothing", "dance", "i", "look; i; help"})
+    public String command;
+
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = BenchmarkWorlds.gameWithRooms(worldSize, 3);
+        game.start();
+        game.step("bench");
+    }
+
+    @Benchmark
+    public boolean step() {
+        return game.step(command);
+    }
+}
@@ -0,0 +1,46 @@
+package games.dungeon_puzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * One turn's worth of events published and drained to inline handlers.
+ * Run with the GC profiler: publishing should allocate nothing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EventBusBenchmark {
+    private static final int EVENTS_PER_TURN = 4;
+
+    @Param({"0", "1", "4"})
+    public int handlers;
+
+    private EventBus bus;
+    private long total;
+
+    @Setup
+    public void setup() {
+        bus = new EventBus(64);
+        for (int i = 0; i < handlers; i++) {
+            bus.subscribe((event, endOfBatch) -> total += event.getValue());
+        }
+    }
+
+    @Benchmark
+    public long publishTurn() {
+        for (int i = 0; i < EVENTS_PER_TURN; i++) {
+            bus.publish(GameEvent.Type.PLAYER_HIT, 3, i, "Skeleton", i);
+        }
+        bus.drain();
+        return total;
+    }
+}
@@ -0,0 +1,48 @@
+package games.dungeon_puzzle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Dropping and picking up an item, then reading the aggregates that
+ * status and puzzle checks use. The time should not grow with the number
+ * of items held, and the GC profiler should show no allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class InventoryBenchmark {
+    @Param({"10", "10000"})
+    public int inventorySize;
+
+    private Inventory inventory;
+    private Item[] items;
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<Item> held = BenchmarkWorlds.items(inventorySize);
+        inventory = new Inventory();
+        inventory.addAll(held);
+        items = held.toArray(new Item[0]);
+    }
+
+    @Benchmark
+    public int moveAndQuery() {
+        Item item = items[next];
+        next = next + 1 == items.length ? 0 : next + 1;
+        inventory.remove(item);
+        inventory.add(item);
+        return inventory.getTotalValue() + inventory.getMostValuable().getValue()
+            + inventory.count(Item.Category.LIGHT);
+    }
+}
@@ -0,0 +1,54 @@
+package games.dungeon_puzzle;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Value range search over every item in the world through the item index.
+ * The narrow range isolates the fixed cost of a query from the cost of its
+ * results; the visit benchmarks skip building a result list.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ItemSearchBenchmark {
+    @Param({"6", "1000", "100000"})
+    public int worldSize;
+
+    private Game game;
+
+    @Setup
+    public void setup() {
+        game = BenchmarkWorlds.gameWithRooms(worldSize, 3);
+    }
+
+    @Benchmark
+    public void visitNarrowRange(Blackhole blackhole) {
+        game.getItemIndex().forEachInRange(30, 31, (item, owner) -> blackhole.consume(item));
+    }
+
+    @Benchmark
+    public int countWideRange() {
+        return game.getItemIndex().countInRange(10, 40);
+    }
+
+    @Benchmark
+    public List<Item> findItemsNarrowRange() {
+        return game.findItemsInValueRange(30, 31);
+    }
+
+    @Benchmark
+    public List<Item> findItemsWideRange() {
+        return game.findItemsInValueRange(10, 40);
+    }
+}
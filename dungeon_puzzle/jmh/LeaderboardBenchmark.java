@@ -0,0 +1,44 @@
+package games.dungeon_puzzle;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * One shared board hammered by several threads, the way parallel
+ * simulation sessions use it. Most random scores are rejected once the
+ * board fills, which is the common case in practice.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Threads(4)
+public class LeaderboardBenchmark {
+    private Leaderboard leaderboard;
+
+    @Setup
+    public void setup() {
+        leaderboard = new Leaderboard(10);
+        leaderboard.submitAll(BenchmarkWorlds.scores(10));
+    }
+
+    @Benchmark
+    public boolean submit() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return leaderboard.submit(new Score("bench", random.nextInt(1100), random.nextInt(300)));
+    }
+
+    @Benchmark
+    public List<Score> snapshot() {
+        return leaderboard.snapshot();
+    }
+}
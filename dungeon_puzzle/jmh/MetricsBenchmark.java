@@ -0,0 +1,44 @@
+package games.dungeon_puzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Recording into one shared latency histogram from one thread and from
+ * eight, which is what sessions finishing commands at once do. The GC
+ * profiler should show no allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MetricsBenchmark {
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @State(Scope.Thread)
+    public static class Durations {
+        long next = 1_000;
+
+        long next() {
+            next = next * 6364136223846793005L + 1442695040888963407L;
+            return (next >>> 44) + 200;
+        }
+    }
+
+    @Benchmark
+    public void record(Durations durations) {
+        histogram.record(durations.next());
+    }
+
+    @Benchmark
+    @Threads(8)
+    public void recordContended(Durations durations) {
+        histogram.record(durations.next());
+    }
+}
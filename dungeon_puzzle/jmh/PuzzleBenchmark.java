@@ -0,0 +1,41 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PuzzleBenchmark {
+    @Param({"2", "100", "10000"})
+    public int inventorySize;
+
+    @Param({"LIGHT_RITUAL", "PORTAL"})
+    public String puzzleType;
+
+    private Game game;
+    private List<Item> inventory;
+
+    @Setup
+    public void setup() {
+        game = BenchmarkWorlds.emptyGame();
+        // Random filler plus the real dungeon items, so every puzzle has a key item to find
+        inventory = new ArrayList<>(BenchmarkWorlds.items(inventorySize));
+        inventory.addAll(List.of(Game.DUNGEON_ITEMS));
+    }
+
+    @Benchmark
+    public PuzzleSolver.Solution findSolution() {
+        return game.findSolution(puzzleType, inventory);
+    }
+}
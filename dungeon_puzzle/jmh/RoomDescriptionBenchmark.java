@@ -0,0 +1,56 @@
+package games.dungeon_puzzle;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Repeated looks at an unchanged room hit the cached description and
+ * should not allocate. afterChange drops and retakes an item each time, so
+ * every look renders the description again.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RoomDescriptionBenchmark {
+    @Param({"0", "3", "100"})
+    public int itemsPerRoom;
+
+    @Param({"Library", "Crypt"})
+    public String roomName;
+
+    private Room room;
+    private Item moved;
+
+    @Setup
+    public void setup() {
+        room = BenchmarkWorlds.roomWithItems(0, roomName, itemsPerRoom, new Random(3));
+        moved = ItemCatalog.intern("pebble", "A smooth grey pebble", 1);
+        room.addItem(moved);
+    }
+
+    @Benchmark
+    public String getFullDescription() {
+        return room.getFullDescription();
+    }
+
+    @Benchmark
+    public byte[] getEncodedDescription() {
+        return room.getEncodedDescription();
+    }
+
+    @Benchmark
+    public byte[] afterChange() {
+        room.removeItem(moved.getName());
+        room.addItem(moved);
+        return room.getEncodedDescription();
+    }
+}
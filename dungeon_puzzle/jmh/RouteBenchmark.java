@@ -0,0 +1,62 @@
+package games.dungeon_puzzle;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Route queries in a generated side x side dungeon. Start rooms are drawn
+ * at random so almost every query misses the cache and pays for a search;
+ * item routes only see the materialized corner of the dungeon.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RouteBenchmark {
+    private static final int PATCH = 100;
+    private static final int REACH = 20;
+
+    @Param({"100", "1000"})
+    public int side;
+
+    private DungeonGenerator world;
+    private RouteService routes;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        world = new DungeonGenerator(42, side, side);
+        ItemIndex index = new ItemIndex();
+        world.attachIndex(index);
+        for (int y = 0; y < PATCH; y++) {
+            for (int x = 0; x < PATCH; x++) {
+                world.getRoom(y * side + x);
+            }
+        }
+        routes = new RouteService(world, index);
+        random = new SplittableRandom(7);
+    }
+
+    @Benchmark
+    public RouteService.Route routeToNearbyRoom() {
+        int x = random.nextInt(side - 2 * REACH) + REACH;
+        int y = random.nextInt(side - 2 * REACH) + REACH;
+        int tx = x + random.nextInt(-REACH, REACH + 1);
+        int ty = y + random.nextInt(-REACH, REACH + 1);
+        return routes.routeToRoom(y * side + x, ty * side + tx);
+    }
+
+    @Benchmark
+    public RouteService.Route routeToNearestItem() {
+        int from = random.nextInt(PATCH) * side + random.nextInt(PATCH);
+        return routes.routeToItem(from, "crown");
+    }
+}
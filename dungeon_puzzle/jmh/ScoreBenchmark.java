@@ -0,0 +1,123 @@
+package games.dungeon_puzzle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Score persistence and sorting. Each trial gets its own scores directory
+ * seeded with scoreListSize entries in the legacy text format and migrated
+ * to the binary store up front. Loading measures scanning that many binary
+ * records and never writes to the directory. Adding measures one append to
+ * a fresh copy of it made for every iteration, so the file does not grow
+ * across iterations.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ScoreBenchmark {
+    @Param({"10", "10000", "1000000"})
+    public int scoreListSize;
+
+    private File directory;
+    private List<Score> scores;
+
+    @State(Scope.Thread)
+    public static class Appends {
+        private File directory;
+        private ScoreManager manager;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setup(ScoreBenchmark benchmark) throws IOException {
+            directory = Files.createTempDirectory("dungeon-scores").toFile();
+            for (File file : benchmark.directory.listFiles()) {
+                Files.copy(file.toPath(), new File(directory, file.getName()).toPath(),
+                    StandardCopyOption.REPLACE_EXISTING);
+            }
+            manager = new ScoreManager(directory);
+        }
+
+        @TearDown(Level.Iteration)
+        public void tearDown() throws IOException {
+            manager.close();
+            deleteDirectory(directory);
+        }
+    }
+
+    // Only the sort needs a fresh unsorted copy before every call
+    @State(Scope.Thread)
+    public static class Unsorted {
+        private List<Score> work;
+
+        @Setup(Level.Invocation)
+        public void setup(ScoreBenchmark benchmark) {
+            work = new ArrayList<>(benchmark.scores);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setupTrial() throws IOException {
+        directory = Files.createTempDirectory("dungeon-scores").toFile();
+        scores = BenchmarkWorlds.scores(scoreListSize);
+        writeScoreFile(scores);
+        new ScoreManager(directory).close();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public List<Score> loadScores() throws IOException {
+        try (ScoreManager loaded = new ScoreManager(directory)) {
+            return loaded.getHighScores();
+        }
+    }
+
+    @Benchmark
+    public void addScore(Appends appends) {
+        appends.manager.addScore(new Score("bench", appends.next++ % 1000, 60));
+    }
+
+    @Benchmark
+    public List<Score> mergeSort(Unsorted unsorted) {
+        List<Score> work = unsorted.work;
+        Leaderboard.mergeSort(work, 0, work.size() - 1);
+        return work;
+    }
+
+    private void writeScoreFile(List<Score> entries) throws IOException {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (Score score : entries) {
+            lines.add(score.getPlayerName() + "," + score.getScore() + "," + score.getTimeTaken());
+        }
+        Files.write(new File(directory, "dungeon_puzzle_scores.txt").toPath(), lines);
+    }
+
+    private static void deleteDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
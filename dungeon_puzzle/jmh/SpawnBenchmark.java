@@ -0,0 +1,53 @@
+package games.dungeon_puzzle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Spawning and releasing an enemy from a table of the given number of
+ * types spread over 40 difficulty tiers. The time should stay near two
+ * alias draws however big the table, and the GC profiler should show no
+ * allocation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SpawnBenchmark {
+    private static final int TIERS = 40;
+
+    @Param({"4", "5000"})
+    public int types;
+
+    private EnemySpawner spawner;
+    private SplittableRandom random;
+
+    @Setup
+    public void setup() {
+        List<EnemyType> roster = new ArrayList<>();
+        for (int i = 0; i < types; i++) {
+            roster.add(new EnemyType("Enemy" + i, 20 + i % 40, 5 + i % 10, 1 + i % TIERS, 1 + i % 5,
+                ItemCatalog.intern("loot" + i, "Benchmark loot", i % 50)));
+        }
+        spawner = new EnemySpawner(new SpawnTable(roster));
+        spawner.updateProgress(TIERS);
+        random = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public int spawnAndRelease() {
+        Enemy enemy = spawner.getNextEnemy(random);
+        spawner.release(enemy);
+        return enemy.getHealth();
+    }
+}
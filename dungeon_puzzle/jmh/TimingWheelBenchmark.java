@@ -0,0 +1,70 @@
+package games.dungeon_puzzle;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A virtual wheel holding the given number of session deadlines spread
+ * over five minutes, each rearming itself when it fires so the count
+ * stays steady. tick moves the wheel on by one tick; rearm is what a
+ * session does when it pauses or restarts its limit. Both should stay
+ * flat as the number of pending deadlines grows.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimingWheelBenchmark {
+    private static final long LIMIT_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    @Param({"1000", "100000"})
+    int pending;
+
+    private TimingWheel wheel;
+    private TimingWheel.Timeout[] timeouts;
+    private long seed = 7;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        wheel = TimingWheel.virtual(TimingWheel.DEFAULT_TICK_NANOS);
+        timeouts = new TimingWheel.Timeout[pending];
+        for (int i = 0; i < pending; i++) {
+            arm(i, nextDelay());
+        }
+    }
+
+    private void arm(int session, long delay) {
+        timeouts[session] = wheel.schedule(delay, () -> arm(session, LIMIT_NANOS));
+    }
+
+    private long nextDelay() {
+        seed = seed * 6364136223846793005L + 1442695040888963407L;
+        return (seed >>> 1) % LIMIT_NANOS;
+    }
+
+    @Benchmark
+    public void tick() {
+        wheel.advance(TimingWheel.DEFAULT_TICK_NANOS);
+    }
+
+    // One tick for every 64 rearms keeps the cancelled shells from piling up
+    @Benchmark
+    public void rearm() {
+        int session = next;
+        next = (next + 1) % pending;
+        timeouts[session].cancel();
+        arm(session, nextDelay());
+        if ((session & 63) == 0) {
+            wheel.advance(TimingWheel.DEFAULT_TICK_NANOS);
+        }
+    }
+}
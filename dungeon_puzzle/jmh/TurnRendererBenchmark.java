@@ -0,0 +1,74 @@
+package games.dungeon_puzzle;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A typical turn, a room description with a few items and exits, rendered
+ * through a TurnRenderer and through the PrintStream it replaced. Both
+ * write to a sink that discards everything, so only rendering is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TurnRendererBenchmark {
+    private static final String[] ITEMS = {"torch", "crystal", "ancient scroll", "golden crown"};
+    private static final String[] EXITS = {"north", "east", "west"};
+
+    private TurnRenderer renderer;
+    private PrintStream printStream;
+
+    @Setup
+    public void setup() {
+        renderer = new TurnRenderer(OutputSink.NULL);
+        printStream = new PrintStream(OutputStream.nullOutputStream(), false, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void turnRenderer() {
+        renderer.println("You are in the Library.");
+        renderer.println("Dusty shelves line the walls.");
+        renderer.println("Items in the room:");
+        for (String item : ITEMS) {
+            renderer.print("  - ");
+            renderer.println(item);
+        }
+        renderer.print("Exits:");
+        for (String exit : EXITS) {
+            renderer.print(" ");
+            renderer.print(exit);
+        }
+        renderer.println();
+        renderer.print("> ");
+        renderer.flush();
+    }
+
+    @Benchmark
+    public void printStream() {
+        printStream.println("You are in the Library.");
+        printStream.println("Dusty shelves line the walls.");
+        printStream.println("Items in the room:");
+        for (String item : ITEMS) {
+            printStream.print("  - ");
+            printStream.println(item);
+        }
+        printStream.print("Exits:");
+        for (String exit : EXITS) {
+            printStream.print(" ");
+            printStream.print(exit);
+        }
+        printStream.println();
+        printStream.print("> ");
+        printStream.flush();
+    }
+}